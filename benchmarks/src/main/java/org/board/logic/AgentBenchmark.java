@@ -0,0 +1,118 @@
+package org.board.logic;
+
+import org.board.entities.Option;
+import org.board.enumerables.OptionType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the agent search: a whole decision (getRankedBestOptions) and the subtree of a single option
+ * (traverseGameTree), at the default depth of the agent. Each invocation searches the next position of the corpus
+ * with an empty transposition table, so a search never reuses the results of a previous invocation.
+ * <p>
+ * The average time mode reports the time per decision, the throughput mode the nodes searched (the "nodes" counter)
+ * per millisecond. Run with -prof gc for the allocation per decision (gc.alloc.rate.norm).
+ * <p>
+ * Low-branching positions don't offer any charter flight. In high-branching positions the current player holds the
+ * card of their own city, which adds a charter flight to every other city. The compact search only applies to
+ * whole decisions, traverseGameTree always searches on a State.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgentBenchmark {
+    /* number of positions in a corpus */
+    static final int POSITIONS = 32;
+
+    /* seed of the corpora */
+    static final long SEED = 23;
+
+    /* the positions and the agent searching them */
+    @State(Scope.Thread)
+    public static class Search {
+        @Param({"low", "high"})
+        String branching;
+
+        @Param({"false", "true"})
+        boolean compactSearch;
+
+        ArrayList<org.board.logic.State> positions;
+        ArrayList<Option> firstOptions = new ArrayList<>();
+        Agent agent = new Agent();
+        org.board.logic.State state;
+        Option option;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            var moves = new MoveBuffer();
+            var high = branching.equals("high");
+
+            positions = Positions.midGame(POSITIONS, SEED, position ->
+                    (Positions.findMove(position, OptionType.CharterFlight, moves) != -1) == high);
+
+            for (var position : positions) {
+                firstOptions.add(position.getAllPossibleActions().get(0));
+            }
+
+            agent.setQuiet(true);
+            agent.setCompactSearch(compactSearch);
+        }
+
+        @Setup(Level.Invocation)
+        public void nextPosition() {
+            state = positions.get(next);
+            option = firstOptions.get(next);
+            next = (next + 1) % positions.size();
+
+            agent.setPlayer(state.getCurrentPlayer());
+            agent.getTranspositionTable().clear();
+        }
+    }
+
+    /* nodes visited by the searches, reported per millisecond in throughput mode */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Agent.Outcome> getRankedBestOptions(Search search, Nodes counter) throws Exception {
+        var start = search.agent.getNodeCount();
+        var ranking = search.agent.getRankedBestOptions(search.state);
+        counter.nodes += search.agent.getNodeCount() - start;
+
+        return ranking;
+    }
+
+    @Benchmark
+    public Agent.Outcome traverseGameTree(Search search, Nodes counter) throws Exception {
+        var start = search.agent.getNodeCount();
+        var outcome = search.agent.traverseGameTree(search.state, search.option);
+        counter.nodes += search.agent.getNodeCount() - start;
+
+        return outcome;
+    }
+}
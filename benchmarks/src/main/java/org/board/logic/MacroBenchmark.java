@@ -0,0 +1,217 @@
+package org.board.logic;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * End-to-end benchmark of whole games: a fixed set of seeded games, each set up from the map by the Loader and played
+ * to the end by an agent in every seat with a fixed search configuration. It reports the games per second, the
+ * latency of the agent's decisions (ranking the options of one action) and the bytes allocated per game, which the
+ * micro benchmarks miss as they don't see the engine and the agent interact over a game. Most decisions follow the
+ * plan of the previous search and take microseconds, so the p99 is the latency of the searches.
+ * <p>
+ * The games run one after the other on a single thread, after a few warm-up games. With --record the results are
+ * saved as the baseline, otherwise they're compared to the stored baseline and the run fails (exit status 1) when
+ * the throughput dropped below the baseline by more than the tolerance. Baselines only compare on the machine they
+ * were recorded on.
+ * <p>
+ * Usage (from the root of the repository):
+ * java -cp benchmarks/target/benchmarks.jar org.board.logic.MacroBenchmark [--games n] [--warmup n] [--seed n]
+ * [--players n] [--baseline file] [--tolerance x] [--record]
+ */
+public final class MacroBenchmark {
+    /* search depth of the agents (the default of the agent, kept fixed here so baselines stay comparable) */
+    private static final int DEPTH = 4;
+
+    /* agent timing the decisions it takes */
+    private static final class TimedAgent extends Agent {
+        long[] latencies = new long[1024];
+        int decisions = 0;
+
+        @Override
+        protected ArrayList<Outcome> getPlannedOptions(State state, int count) throws Exception {
+            var start = System.nanoTime();
+            var outcomes = super.getPlannedOptions(state, count);
+
+            if (decisions == latencies.length) latencies = Arrays.copyOf(latencies, decisions * 2);
+            latencies[decisions++] = System.nanoTime() - start;
+
+            return outcomes;
+        }
+    }
+
+    /* results of a run */
+    private record Result(int games, double gamesPerSecond, double p50Millis, double p99Millis, double bytesPerGame) {
+        void print() {
+            System.out.printf("Games: %d, %.3f games per second%n", games, gamesPerSecond);
+            System.out.printf("Decision latency: p50 %.2fms, p99 %.2fms%n", p50Millis, p99Millis);
+            System.out.printf("Allocated: %.1f MB per game%n", bytesPerGame / 1e6);
+        }
+    }
+
+    private MacroBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var games = 16;
+        var warmup = 4;
+        var seed = 1L;
+        var players = 2;
+        var baseline = Path.of("benchmarks/macro-baseline.properties");
+        var tolerance = 0.1;
+        var record = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games" -> games = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--players" -> players = Integer.parseInt(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]);
+                case "--record" -> record = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        // the warm-up games are other deals than the measured ones.
+        run(warmup, ~seed, players);
+        var result = run(games, seed, players);
+        result.print();
+
+        var settings = new Properties();
+        settings.setProperty("games", Integer.toString(games));
+        settings.setProperty("seed", Long.toString(seed));
+        settings.setProperty("players", Integer.toString(players));
+        settings.setProperty("depth", Integer.toString(DEPTH));
+
+        if (record) {
+            save(baseline, settings, result);
+            System.out.println("Baseline saved to " + baseline);
+            return;
+        }
+
+        if (!Files.exists(baseline)) {
+            System.out.println("No baseline at " + baseline + ", run with --record to save one.");
+            return;
+        }
+
+        var stored = read(baseline);
+
+        for (var key : settings.stringPropertyNames()) {
+            if (!settings.getProperty(key).equals(stored.getProperty(key))) {
+                throw new Exception("The baseline was recorded with " + key + " " + stored.getProperty(key) +
+                        " and this run uses " + settings.getProperty(key) + ".");
+            }
+        }
+
+        var expected = Double.parseDouble(stored.getProperty("gamesPerSecond"));
+        var change = result.gamesPerSecond() / expected - 1;
+
+        System.out.printf("Baseline: %.3f games per second (%+.1f%%), p50 %.2fms, p99 %.2fms, %.1f MB per game%n",
+                expected, change * 100, Double.parseDouble(stored.getProperty("p50Millis")),
+                Double.parseDouble(stored.getProperty("p99Millis")),
+                Double.parseDouble(stored.getProperty("bytesPerGame")) / 1e6);
+
+        if (change < -tolerance) {
+            System.out.printf("Throughput regressed by more than %.0f%%%n", tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays a set of games.
+     * @param games the number of games.
+     * @param seed the seed the seeds of the games are drawn from.
+     * @param players the number of seats at each game.
+     * @return the results of the games.
+     * @throws Exception when a game state errors.
+     */
+    private static Result run(int games, long seed, int players) throws Exception {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var threadId = Thread.currentThread().getId();
+        var seeds = new SplittableRandom(seed);
+        var agent = new TimedAgent();
+
+        agent.setQuiet(true);
+        agent.setDepth(DEPTH);
+
+        var allocated = threadBean.getThreadAllocatedBytes(threadId);
+        var start = System.nanoTime();
+
+        for (var game = 0; game < games; game++) {
+            var state = new State(new GameContext(seeds.nextLong(), players));
+            state.debug = false;
+
+            agent.getTranspositionTable().clear();
+
+            while (state.isRunning()) {
+                agent.setPlayer(state.getCurrentPlayer());
+                agent.play(state);
+            }
+        }
+
+        var elapsed = System.nanoTime() - start;
+        allocated = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+        var latencies = Arrays.copyOf(agent.latencies, agent.decisions);
+        Arrays.sort(latencies);
+
+        return new Result(games, games / (elapsed / 1e9), percentile(latencies, 0.5) / 1e6,
+                percentile(latencies, 0.99) / 1e6, games == 0 ? 0 : (double) allocated / games);
+    }
+
+    /**
+     * Gets a percentile by the nearest rank.
+     * @param sorted the values in ascending order.
+     * @param fraction the percentile as a fraction (0 - 1).
+     * @return the value, 0 when there are no values.
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    /**
+     * Saves the results as the baseline.
+     * @param path the baseline file.
+     * @param settings the settings of the run.
+     * @param result the results.
+     * @throws Exception when the file can't be written.
+     */
+    private static void save(Path path, Properties settings, Result result) throws Exception {
+        var properties = new Properties();
+        properties.putAll(settings);
+        properties.setProperty("gamesPerSecond", Double.toString(result.gamesPerSecond()));
+        properties.setProperty("p50Millis", Double.toString(result.p50Millis()));
+        properties.setProperty("p99Millis", Double.toString(result.p99Millis()));
+        properties.setProperty("bytesPerGame", Long.toString((long) result.bytesPerGame()));
+
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, "MacroBenchmark baseline (only comparable on the machine that recorded it)");
+        }
+    }
+
+    /**
+     * Reads the baseline.
+     * @param path the baseline file.
+     * @return the stored settings and results.
+     * @throws Exception when the file can't be read.
+     */
+    private static Properties read(Path path) throws Exception {
+        var properties = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        return properties;
+    }
+}
@@ -0,0 +1,177 @@
+package org.board.logic;
+
+import org.board.entities.CityGraph;
+import org.board.entities.Move;
+import org.board.enumerables.OptionType;
+import org.board.utils.Loader;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+/**
+ * Builds the corpora of mid-game positions the benchmarks run over. The positions are played out from new games
+ * with a cheap policy - cures first, heading for a research station with five cards of a suit, treating cubes half
+ * of the time, random moves otherwise - so they hold the hands, cubes, stations and outbreaks of a game in progress. A corpus only depends on its seed, so every run
+ * measures the same positions.
+ */
+public final class Positions {
+    /* turns played before positions are taken, so the board is past its initial infections */
+    private static final int OPENING_TURNS = 3;
+
+    /* turns after which a game is dropped for a new one */
+    private static final int MAX_TURNS = 24;
+
+    /* one in SAMPLING positions is tested for the corpus, so the corpus spreads over many games */
+    private static final int SAMPLING = 4;
+
+    /* games played before giving up on finding the positions */
+    private static final int MAX_GAMES = 10_000;
+
+    private Positions() {
+    }
+
+    /**
+     * Builds a corpus of positions at the start of a turn.
+     * @param count the number of positions.
+     * @param seed the seed of the corpus.
+     * @return the positions (with debug output off).
+     * @throws Exception when the games fail.
+     */
+    public static ArrayList<State> midGame(int count, long seed) throws Exception {
+        return collect(Loader.loadCityGraph(), count, seed, true, state -> true);
+    }
+
+    /**
+     * Builds a corpus of positions at the start of a turn passing a filter.
+     * @param count the number of positions.
+     * @param seed the seed of the corpus.
+     * @param filter the positions to take.
+     * @return the positions (with debug output off).
+     * @throws Exception when the games fail or the positions couldn't be found.
+     */
+    public static ArrayList<State> midGame(int count, long seed, Predicate<State> filter) throws Exception {
+        return collect(Loader.loadCityGraph(), count, seed, true, filter);
+    }
+
+    /**
+     * Builds a corpus of positions at the start of a turn on a given map passing a filter.
+     * @param graph the map (see MapGenerator for synthetic maps).
+     * @param count the number of positions.
+     * @param seed the seed of the corpus.
+     * @param filter the positions to take.
+     * @return the positions (with debug output off).
+     * @throws Exception when the games fail or the positions couldn't be found.
+     */
+    public static ArrayList<State> midGame(CityGraph graph, int count, long seed, Predicate<State> filter) throws Exception {
+        return collect(graph, count, seed, true, filter);
+    }
+
+    /**
+     * Builds a corpus of positions offering a move of a type to the current player (at any action of a turn).
+     * @param type the type of move.
+     * @param count the number of positions.
+     * @param seed the seed of the corpus.
+     * @return the positions (with debug output off).
+     * @throws Exception when the games fail or the positions couldn't be found.
+     */
+    public static ArrayList<State> offering(OptionType type, int count, long seed) throws Exception {
+        var moves = new MoveBuffer();
+        return collect(Loader.loadCityGraph(), count, seed, false, state -> findMove(state, type, moves) != -1);
+    }
+
+    /**
+     * Finds the first move of a type in a position.
+     * @param state the position.
+     * @param type the type of move.
+     * @param moves a buffer to generate the moves in.
+     * @return the packed move, -1 when the position doesn't offer the type of move.
+     */
+    public static long findMove(State state, OptionType type, MoveBuffer moves) {
+        moves.clear();
+        state.generateMoves(moves);
+
+        for (var i = 0; i < moves.size(); i++) {
+            if (Move.getType(moves.get(i)) == type) return moves.get(i);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Plays games until enough positions passing a filter are found. Positions are taken at random, a few per game,
+     * so that the corpus mixes games, player counts and stages of the game.
+     * @param graph the map.
+     * @param count the number of positions.
+     * @param seed the seed of the corpus.
+     * @param turnStart true to only take positions at the start of a turn.
+     * @param filter the positions to take.
+     * @return the positions.
+     * @throws Exception when the games fail or the positions couldn't be found.
+     */
+    private static ArrayList<State> collect(CityGraph graph, int count, long seed, boolean turnStart, Predicate<State> filter) throws Exception {
+        var random = new SplittableRandom(seed);
+        var positions = new ArrayList<State>();
+        var moves = new MoveBuffer();
+
+        for (var game = 0; positions.size() < count; game++) {
+            if (game == MAX_GAMES) {
+                throw new Exception("Couldn't find " + count + " positions in " + MAX_GAMES + " games.");
+            }
+
+            var state = new State(new GameContext(graph, random.nextLong(), 2 + game % 3));
+            state.debug = false;
+
+            for (var turn = 0; turn < MAX_TURNS && state.isRunning() && positions.size() < count; turn++) {
+                for (var action = 1; action <= 4 && state.isRunning(); action++) {
+                    var take = turn >= OPENING_TURNS && (action == 1 || !turnStart) && random.nextInt(SAMPLING) == 0;
+
+                    if (take && positions.size() < count && filter.test(state)) {
+                        var position = state.deepClone();
+                        position.debug = false;
+                        positions.add(position);
+                    }
+
+                    moves.clear();
+                    state.generateMoves(moves);
+                    state.performAction(pickMove(state, moves, random), action);
+                }
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Picks the move of the cheap policy.
+     * @param state the position.
+     * @param moves the moves of the position.
+     * @param random the generator of the corpus.
+     * @return the packed move.
+     */
+    private static long pickMove(State state, MoveBuffer moves, SplittableRandom random) {
+        var player = state.getCurrentPlayer();
+        var curing = false;
+
+        for (var suit = 1; suit < 5; suit++) {
+            if (player.getSuitCount(suit) >= 5) curing = true;
+        }
+
+        var treat = -1L;
+        var station = -1L;
+
+        for (var i = 0; i < moves.size(); i++) {
+            var type = Move.getType(moves.get(i));
+            var endCity = Move.getEndCity(moves.get(i));
+
+            if (type == OptionType.DiscoverACure) return moves.get(i);
+            if (type == OptionType.TreatDiseaseRemoveOneCube || type == OptionType.TreatDiseaseRemoveAll) treat = moves.get(i);
+            if (endCity != -1 && state.hasStation(endCity)) station = moves.get(i);
+        }
+
+        if (curing && station != -1 && !state.hasStation(player.getCity())) return station;
+        if (treat != -1 && random.nextBoolean()) return treat;
+
+        return moves.get(random.nextInt(moves.size()));
+    }
+}
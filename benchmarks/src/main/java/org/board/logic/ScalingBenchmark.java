@@ -0,0 +1,204 @@
+package org.board.logic;
+
+import org.board.entities.City;
+import org.board.entities.CityGraph;
+import org.board.enumerables.OptionType;
+import org.board.utils.MapGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling curves of the game engine on synthetic maps (see MapGenerator): move generation, outbreak chains and the
+ * agent search, over the number of cities, the average degree and the degree distribution of the map. Reading a
+ * score across the cities gives how an operation scales with the size of the map, across the degrees and
+ * distributions how it scales with the routes per city and with hubs.
+ * <p>
+ * The maps are generated once per trial from fixed seeds, so every run measures the same maps. A single setting is
+ * measured with -p, e.g. -p cities=1000 -p degree=4 -p distribution=PowerLaw.
+ * <p>
+ * Outbreak chains start from the city with the most routes, in a region of cities around it holding three cubes of
+ * its colour. A chain ends the game at the eighth outbreak, so it resolves up to eight outbreaks whatever the map;
+ * its score follows the routes of the cities breaking out rather than the size of the map. On the smallest maps the
+ * chain may run out of cubes first, as the cube supply follows the number of cities of a colour. A chain can't be
+ * undone, it works on a fresh clone of the game made before each invocation, which leaves the caches colder the
+ * larger the map.
+ * <p>
+ * The game State is written out in full as the JMH State annotation shares its name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalingBenchmark {
+    /* number of positions in a corpus */
+    static final int POSITIONS = 32;
+
+    /* seed of the maps and corpora */
+    static final long SEED = 31;
+
+    /* cities holding three cubes around the city breaking out, enough for a chain to end the game */
+    static final int REGION = 8;
+
+    /* the synthetic map */
+    @State(Scope.Benchmark)
+    public static class Map {
+        @Param({"100", "1000", "10000"})
+        int cities;
+
+        @Param({"4", "8"})
+        double degree;
+
+        @Param({"Uniform", "PowerLaw"})
+        MapGenerator.Distribution distribution;
+
+        CityGraph graph;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            var generator = new MapGenerator();
+            generator.setCities(cities);
+            generator.setDegree(degree);
+            generator.setDistribution(distribution);
+            generator.setSeed(SEED);
+
+            graph = generator.generate();
+        }
+    }
+
+    /* mid-game positions at the start of a turn on the map */
+    @State(Scope.Thread)
+    public static class MidGame {
+        ArrayList<org.board.logic.State> positions;
+        MoveBuffer moves = new MoveBuffer();
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp(Map map) throws Exception {
+            positions = Positions.midGame(map.graph, POSITIONS, SEED, position -> true);
+        }
+
+        org.board.logic.State nextPosition() {
+            var position = positions.get(next);
+            next = (next + 1) % positions.size();
+            return position;
+        }
+    }
+
+    /* a new game with a region ready to chain outbreaks, on a fresh clone for each invocation */
+    @State(Scope.Thread)
+    public static class Outbreaks {
+        org.board.logic.State position;
+        org.board.logic.State state;
+        City city;
+
+        @Setup(Level.Trial)
+        public void setUp(Map map) throws Exception {
+            var graph = map.graph;
+
+            position = new org.board.logic.State(new GameContext(graph, SEED, 2));
+            position.debug = false;
+
+            city = graph.getCities().get(0);
+
+            for (var candidate : graph.getCities()) {
+                if (graph.getNeighbourCount(candidate.getId()) > graph.getNeighbourCount(city.getId())) city = candidate;
+            }
+
+            // filling the cities closest to the hub that don't have any cube of its colour yet, placing three cubes
+            // in a city that already has some would break out.
+            var colour = city.getColour();
+            var queue = new ArrayDeque<Integer>();
+            var seen = new boolean[graph.getCityCount()];
+            var filled = 0;
+
+            queue.add(city.getId());
+            seen[city.getId()] = true;
+
+            while (!queue.isEmpty() && filled < REGION) {
+                var current = queue.poll();
+
+                if (position.getCubesOfSuitInCity(current, colour) == 0) {
+                    position.placeNCubesInCity(graph.getCities().get(current), colour, 3);
+                    filled += 1;
+                }
+
+                for (var i = 0; i < graph.getNeighbourCount(current); i++) {
+                    var neighbour = graph.getNeighbour(current, i);
+                    if (seen[neighbour]) continue;
+
+                    seen[neighbour] = true;
+                    queue.add(neighbour);
+                }
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void nextPosition() throws Exception {
+            state = position.deepClone();
+            state.debug = false;
+        }
+    }
+
+    /* low-branching positions on the map and the agent searching them */
+    @State(Scope.Thread)
+    public static class Search {
+        ArrayList<org.board.logic.State> positions;
+        Agent agent = new Agent();
+        org.board.logic.State state;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp(Map map) throws Exception {
+            var moves = new MoveBuffer();
+
+            // without charter flights, so the branching doesn't grow with the map.
+            positions = Positions.midGame(map.graph, POSITIONS, SEED, position ->
+                    Positions.findMove(position, OptionType.CharterFlight, moves) == -1);
+
+            agent.setQuiet(true);
+        }
+
+        @Setup(Level.Invocation)
+        public void nextPosition() {
+            state = positions.get(next);
+            next = (next + 1) % positions.size();
+
+            agent.setPlayer(state.getCurrentPlayer());
+            agent.getTranspositionTable().clear();
+        }
+    }
+
+    @Benchmark
+    public int generateMoves(MidGame corpus) {
+        corpus.moves.clear();
+        corpus.nextPosition().generateMoves(corpus.moves);
+        return corpus.moves.size();
+    }
+
+    @Benchmark
+    public int placeNCubesInCity(Outbreaks corpus) throws Exception {
+        corpus.state.placeNCubesInCity(corpus.city, corpus.city.getColour(), 1);
+        return corpus.state.getOutbreakMarkerState();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArrayList<Agent.Outcome> getRankedBestOptions(Search search) throws Exception {
+        return search.agent.getRankedBestOptions(search.state);
+    }
+}
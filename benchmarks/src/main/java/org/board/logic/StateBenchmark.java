@@ -0,0 +1,222 @@
+package org.board.logic;
+
+import org.board.entities.City;
+import org.board.entities.Option;
+import org.board.enumerables.OptionType;
+import org.board.utils.Loader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hot paths of the game engine over corpora of mid-game positions (see Positions). Every
+ * invocation works on the next position of its corpus, so a score is the average over the whole corpus.
+ * <p>
+ * Actions are performed on undoable positions and undone after each invocation, so their scores include the undo.
+ * Infections and deals can't be undone on their own, they work on a fresh clone of the position made before each
+ * invocation (outside of the measurement).
+ * <p>
+ * The game State is written out in full as the JMH State annotation shares its name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateBenchmark {
+    /* number of positions in a corpus */
+    static final int POSITIONS = 64;
+
+    /* seed of the corpora */
+    static final long SEED = 17;
+
+    /* mid-game positions at the start of a turn */
+    @State(Scope.Thread)
+    public static class MidGame {
+        ArrayList<org.board.logic.State> positions;
+        MoveBuffer moves = new MoveBuffer();
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            positions = Positions.midGame(POSITIONS, SEED);
+        }
+
+        org.board.logic.State nextPosition() {
+            var position = positions.get(next);
+            next = (next + 1) % positions.size();
+            return position;
+        }
+    }
+
+    /* positions offering a type of move, with the move to perform */
+    @State(Scope.Thread)
+    public static class Actions {
+        @Param({"DriveOrFerry", "DirectFlight", "CharterFlight", "ShuttleFlight", "BuildResearchStation",
+                "TreatDiseaseRemoveOneCube", "TreatDiseaseRemoveAll", "DiscoverACure", "TransferCard"})
+        OptionType type;
+
+        ArrayList<org.board.logic.State> positions;
+        long[] moves;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            positions = Positions.offering(type, POSITIONS, SEED);
+            moves = new long[positions.size()];
+
+            var buffer = new MoveBuffer();
+
+            for (var i = 0; i < positions.size(); i++) {
+                positions.get(i).setUndoable(true);
+                moves[i] = Positions.findMove(positions.get(i), type, buffer);
+            }
+        }
+    }
+
+    /* positions with a city about to outbreak, on a fresh clone for each invocation */
+    @State(Scope.Thread)
+    public static class Outbreaks {
+        ArrayList<org.board.logic.State> positions = new ArrayList<>();
+        ArrayList<City> targets = new ArrayList<>();
+        org.board.logic.State state;
+        City city;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            var graph = Loader.loadCityGraph();
+
+            // the city with three cubes of its colour whose neighbours would chain the most outbreaks.
+            for (var position : Positions.midGame(POSITIONS, SEED)) {
+                City target = null;
+                var best = -1;
+
+                for (var candidate : graph.getCities()) {
+                    if (position.getCubesOfSuitInCity(candidate.getId(), candidate.getColour()) < 3) continue;
+
+                    var chain = 0;
+
+                    for (var i = 0; i < graph.getNeighbourCount(candidate.getId()); i++) {
+                        var neighbour = graph.getNeighbour(candidate.getId(), i);
+                        if (position.getCubesOfSuitInCity(neighbour, candidate.getColour()) == 3) chain += 1;
+                    }
+
+                    if (chain <= best) continue;
+
+                    target = candidate;
+                    best = chain;
+                }
+
+                if (target == null) continue;
+
+                positions.add(position);
+                targets.add(target);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void nextPosition() throws Exception {
+            state = positions.get(next).deepClone();
+            state.debug = false;
+            city = targets.get(next);
+            next = (next + 1) % positions.size();
+        }
+    }
+
+    /* positions whose next deal does or doesn't draw an epidemic, on a fresh clone for each invocation */
+    @State(Scope.Thread)
+    public static class Deals {
+        @Param({"false", "true"})
+        boolean epidemic;
+
+        ArrayList<org.board.logic.State> positions = new ArrayList<>();
+        org.board.logic.State state;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            for (var seed = SEED; positions.size() < POSITIONS; seed++) {
+                for (var position : Positions.midGame(POSITIONS, seed)) {
+                    if (drawsEpidemic(position) == epidemic && positions.size() < POSITIONS) positions.add(position);
+                }
+            }
+        }
+
+        /**
+         * Checks if the next deal of two cards draws an epidemic.
+         * @param position the position.
+         * @return true when one of the next two cards is an epidemic.
+         */
+        private static boolean drawsEpidemic(org.board.logic.State position) throws Exception {
+            var probe = position.deepClone();
+            probe.debug = false;
+
+            var epidemics = probe.getEpidemics();
+            probe.dealNPlayerCardsToPlayer(2);
+
+            return probe.getEpidemics() != epidemics;
+        }
+
+        @Setup(Level.Invocation)
+        public void nextPosition() throws Exception {
+            state = positions.get(next).deepClone();
+            state.debug = false;
+            next = (next + 1) % positions.size();
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Option> getAllPossibleActions(MidGame corpus) {
+        return corpus.nextPosition().getAllPossibleActions();
+    }
+
+    @Benchmark
+    public int generateMoves(MidGame corpus) {
+        corpus.moves.clear();
+        corpus.nextPosition().generateMoves(corpus.moves);
+        return corpus.moves.size();
+    }
+
+    @Benchmark
+    public org.board.logic.State deepClone(MidGame corpus) throws Exception {
+        return corpus.nextPosition().deepClone();
+    }
+
+    @Benchmark
+    public long performAction(Actions corpus) throws Exception {
+        var position = corpus.positions.get(corpus.next);
+        var move = corpus.moves[corpus.next];
+        corpus.next = (corpus.next + 1) % corpus.positions.size();
+
+        position.performAction(move, 1);
+        var hash = position.getHash();
+        position.undo();
+
+        return hash;
+    }
+
+    @Benchmark
+    public int placeNCubesInCity(Outbreaks corpus) throws Exception {
+        corpus.state.placeNCubesInCity(corpus.city, corpus.city.getColour(), 1);
+        return corpus.state.getOutbreakMarkerState();
+    }
+
+    @Benchmark
+    public int dealNPlayerCardsToPlayer(Deals corpus) throws Exception {
+        corpus.state.dealNPlayerCardsToPlayer(2);
+        return corpus.state.getEpidemics();
+    }
+}
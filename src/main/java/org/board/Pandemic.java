@@ -1,12 +1,203 @@
 package org.board;
 
+import org.board.logic.Agent;
 import org.board.logic.Game;
+import org.board.logic.Simulation;
+import org.board.logic.Weights;
+import org.board.tuning.Tournament;
+import org.board.tuning.Tuner;
+import org.board.utils.BinaryMap;
+import org.board.utils.Loader;
+import org.board.utils.MapGenerator;
+
+import java.nio.file.Path;
 
 public class Pandemic {	//class variables on top
 
     public static void main(String[] args) throws Exception {
-        var game = new Game();
+        if (args.length > 0 && args[0].equals("simulate")) {
+            simulate(args);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("tune")) {
+            tune(args);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("tournament")) {
+            tournament(args);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("compile-map")) {
+            compileMap(args);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("generate-map")) {
+            generateMap(args);
+            return;
+        }
+
+        var agent = new Agent();
+
+        // plays against tuned weights: --weights file
+        if (args.length > 1 && args[0].equals("--weights")) {
+            agent.setWeights(Weights.load(Path.of(args[1])));
+        }
+
+        var game = new Game(agent);
 
         game.start();
     }
-}
\ No newline at end of file
+
+    /**
+     * Plays games with agents in every seat and prints how they went.
+     * Usage: simulate [--games n] [--threads n] [--seed n] [--players n] [--weights file] [--map file]
+     * @param args the command line arguments.
+     * @throws Exception when a game state errors.
+     */
+    private static void simulate(String[] args) throws Exception {
+        var simulation = new Simulation();
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            var value = args[i + 1];
+
+            switch (args[i]) {
+                case "--games" -> simulation.setGames(Integer.parseInt(value));
+                case "--threads" -> simulation.setThreads(Integer.parseInt(value));
+                case "--seed" -> simulation.setSeed(Long.parseLong(value));
+                case "--players" -> simulation.setPlayers(Integer.parseInt(value));
+                case "--map" -> simulation.setMap(Loader.loadCityGraph(Path.of(value)));
+                case "--weights" -> {
+                    var weights = Weights.load(Path.of(value));
+
+                    simulation.setAgents(() -> {
+                        var agent = new Agent();
+                        agent.setWeights(weights);
+                        agent.setTranspositionTableSize(Simulation.GAME_TABLE_SIZE);
+                        return agent;
+                    });
+                }
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        simulation.run().print(System.out);
+    }
+
+    /**
+     * Tunes the evaluation weights of the agent by self-play (see Tuner).
+     * Usage: tune [--iterations n] [--games n] [--threads n] [--seed n] [--players n] [--depth n]
+     *             [--step-size x] [--perturbation x] [--weights file] [--checkpoint file] [--output file]
+     * @param args the command line arguments.
+     * @throws Exception when a game state errors or the files can't be read or written.
+     */
+    private static void tune(String[] args) throws Exception {
+        var tuner = new Tuner();
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            var value = args[i + 1];
+
+            switch (args[i]) {
+                case "--iterations" -> tuner.setIterations(Integer.parseInt(value));
+                case "--games" -> tuner.setGames(Integer.parseInt(value));
+                case "--threads" -> tuner.setThreads(Integer.parseInt(value));
+                case "--seed" -> tuner.setSeed(Long.parseLong(value));
+                case "--players" -> tuner.setPlayers(Integer.parseInt(value));
+                case "--depth" -> tuner.setDepth(Integer.parseInt(value));
+                case "--step-size" -> tuner.setStepSize(Double.parseDouble(value));
+                case "--perturbation" -> tuner.setPerturbation(Double.parseDouble(value));
+                case "--weights" -> tuner.setStart(Weights.load(Path.of(value)));
+                case "--checkpoint" -> tuner.setCheckpoint(Path.of(value));
+                case "--output" -> tuner.setOutput(Path.of(value));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.println("Tuned weights: " + tuner.run());
+    }
+
+    /**
+     * Compares agent configurations on the same deals (see Tournament), the first configuration is the baseline.
+     * Usage: tournament --entrant name[:setting=value,...] --entrant ... [--games n] [--round n] [--threads n]
+     *                   [--seed n] [--players n] [--alpha x] [--sequential true|false]
+     * @param args the command line arguments.
+     * @throws Exception when a configuration is invalid or a game state errors.
+     */
+    private static void tournament(String[] args) throws Exception {
+        var tournament = new Tournament();
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            var value = args[i + 1];
+
+            switch (args[i]) {
+                case "--entrant" -> tournament.addEntrant(Tournament.Entrant.parse(value));
+                case "--games" -> tournament.setGames(Integer.parseInt(value));
+                case "--round" -> tournament.setRound(Integer.parseInt(value));
+                case "--threads" -> tournament.setThreads(Integer.parseInt(value));
+                case "--seed" -> tournament.setSeed(Long.parseLong(value));
+                case "--players" -> tournament.setPlayers(Integer.parseInt(value));
+                case "--alpha" -> tournament.setAlpha(Double.parseDouble(value));
+                case "--sequential" -> tournament.setSequential(Boolean.parseBoolean(value));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        tournament.run().print(System.out);
+    }
+
+    /**
+     * Compiles a text map into a binary map (see BinaryMap), loaded instead of map.txt when saved as map.bin.
+     * Usage: compile-map [--input file] [--output file]
+     * @param args the command line arguments.
+     * @throws Exception when the map can't be loaded or written.
+     */
+    private static void compileMap(String[] args) throws Exception {
+        var input = Path.of("map.txt");
+        var output = Path.of("map.bin");
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--input" -> input = Path.of(args[i + 1]);
+                case "--output" -> output = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        BinaryMap.compile(input, output);
+        System.out.println("Compiled " + input + " into " + output);
+    }
+
+    /**
+     * Generates a synthetic map for scale testing (see MapGenerator), as a text map or as a binary map when the
+     * output ends with .bin.
+     * Usage: generate-map [--cities n] [--degree x] [--distribution Uniform|PowerLaw] [--colours n]
+     *                     [--partition Arcs|Random] [--clustering x] [--window n] [--seed n] [--output file]
+     * @param args the command line arguments.
+     * @throws Exception when the settings are out of range or the map can't be written.
+     */
+    private static void generateMap(String[] args) throws Exception {
+        var generator = new MapGenerator();
+        var output = Path.of("generated.txt");
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--cities" -> generator.setCities(Integer.parseInt(args[i + 1]));
+                case "--degree" -> generator.setDegree(Double.parseDouble(args[i + 1]));
+                case "--distribution" -> generator.setDistribution(MapGenerator.Distribution.valueOf(args[i + 1]));
+                case "--colours" -> generator.setColours(Integer.parseInt(args[i + 1]));
+                case "--partition" -> generator.setPartition(MapGenerator.Partition.valueOf(args[i + 1]));
+                case "--clustering" -> generator.setClustering(Double.parseDouble(args[i + 1]));
+                case "--window" -> generator.setWindow(Integer.parseInt(args[i + 1]));
+                case "--seed" -> generator.setSeed(Long.parseLong(args[i + 1]));
+                case "--output" -> output = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        generator.save(output);
+        System.out.println("Generated " + output);
+    }
+}
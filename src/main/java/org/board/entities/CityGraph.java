@@ -0,0 +1,299 @@
+package org.board.entities;
+
+import org.board.enumerables.Colour;
+import org.board.enumerables.OptionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * The map: the cities and the routes between them. The routes are compiled into compressed sparse row arrays - the
+ * neighbours of every city one after the other in a single array, with the offset of each city's neighbours - so
+ * walking the neighbours of a city reads a slice of an int array. Cities are looked up by name through a hash index.
+ * <p>
+ * The graph never changes once built, and is shared by every game on the map.
+ */
+public final class CityGraph {
+    /* the epidemic cards are shuffled into the player deck after its 15th card (see Loader.shufflePlayerCards) */
+    public static final int MIN_CITIES = 16;
+
+    /* moves store city ids on 16 bits (see Move) */
+    public static final int MAX_CITIES = 0xFFFF - 1;
+
+    /* the cities, indexed by id */
+    private final ArrayList<City> cities;
+
+    /* the cities by name */
+    private final HashMap<String, City> index;
+
+    /* the neighbours of city c are adjacency[offsets[c]] to adjacency[offsets[c + 1] - 1], in the order of the map */
+    private final int[] offsets;
+    private final int[] adjacency;
+
+    /* packed moves to drive or ferry along each route, in the order of adjacency */
+    private final long[] ferryMoves;
+
+    /* packed moves to charter a flight to each city, without the card to dispose, indexed by city */
+    private final long[] charterMoves;
+
+    /**
+     * Creates a graph from its compressed sparse rows.
+     * @param cities the cities, indexed by id.
+     * @param index the cities by name.
+     * @param offsets the offset of the neighbours of each city, with an extra offset at the end.
+     * @param adjacency the neighbours of every city, one city after the other.
+     */
+    private CityGraph(ArrayList<City> cities, HashMap<String, City> index, int[] offsets, int[] adjacency) {
+        this.cities = cities;
+        this.index = index;
+        this.offsets = offsets;
+        this.adjacency = adjacency;
+
+        ferryMoves = new long[adjacency.length];
+
+        for (var i = 0; i < adjacency.length; i++) {
+            ferryMoves[i] = Move.of(OptionType.DriveOrFerry, -1, adjacency[i], -1, -1);
+        }
+
+        charterMoves = new long[cities.size()];
+
+        for (var city = 0; city < cities.size(); city++) {
+            charterMoves[city] = Move.of(OptionType.CharterFlight, -1, city, -1, -1);
+        }
+    }
+
+    public ArrayList<City> getCities() {
+        return cities;
+    }
+
+    public int getCityCount() {
+        return cities.size();
+    }
+
+    /**
+     * Retrieves a city by the name.
+     * @param name the name of the city to retrieve
+     * @return the city or a null pointer
+     */
+    public City getCity(String name) {
+        return index.get(name);
+    }
+
+    /**
+     * Gets the offset of the neighbours of each city in the adjacency array, with an extra offset at the end. The
+     * array is shared and must not be modified.
+     * @return the offsets, indexed by city
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Gets the neighbours of every city, one city after the other (see getOffsets). The array is shared and must not
+     * be modified.
+     * @return the neighbouring city ids
+     */
+    public int[] getAdjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Gets the number of neighbours of a city.
+     * @param city the city id
+     * @return the number of neighbours
+     */
+    public int getNeighbourCount(int city) {
+        return offsets[city + 1] - offsets[city];
+    }
+
+    /**
+     * Gets a neighbour of a city.
+     * @param city the city id
+     * @param i the index of the neighbour (0 - neighbour count)
+     * @return the neighbouring city id
+     */
+    public int getNeighbour(int city, int i) {
+        return adjacency[offsets[city] + i];
+    }
+
+    /**
+     * Gets the packed moves to drive or ferry along every route, in the order of the adjacency array, so the moves
+     * from a city are the slice of its neighbours. The array is shared and must not be modified.
+     * @return the packed moves
+     */
+    public long[] getFerryMoves() {
+        return ferryMoves;
+    }
+
+    /**
+     * Gets the packed moves to charter a flight to each city, in the order of the cities. The moves don't have a
+     * card, the card disposed is or'ed in with Move.card. The array is shared and must not be modified.
+     * @return the packed moves
+     */
+    public long[] getCharterMoves() {
+        return charterMoves;
+    }
+
+    /**
+     * Checks that a game can be played on a map with a number of cities.
+     * @param cityCount the number of cities of the map.
+     * @throws Exception when the map has too few or too many cities.
+     */
+    public static void checkCityCount(int cityCount) throws Exception {
+        if (cityCount < MIN_CITIES || cityCount > MAX_CITIES) {
+            throw new Exception("A map has " + MIN_CITIES + " to " + MAX_CITIES + " cities, not " + cityCount);
+        }
+    }
+
+    /**
+     * Creates a graph from cities and their compressed sparse rows, as saved by a compiled map.
+     * @param cities the cities, indexed by id.
+     * @param offsets the offset of the neighbours of each city, with an extra offset at the end.
+     * @param adjacency the neighbours of every city, one city after the other.
+     * @return the graph
+     * @throws Exception when a city is on the map twice, the rows don't match the cities or the map is too small or
+     * too large (see checkCityCount).
+     */
+    public static CityGraph of(ArrayList<City> cities, int[] offsets, int[] adjacency) throws Exception {
+        checkCityCount(cities.size());
+
+        if (offsets.length != cities.size() + 1 || offsets[0] != 0 || offsets[cities.size()] != adjacency.length) {
+            throw new Exception("The routes don't match the " + cities.size() + " cities of the map");
+        }
+
+        var index = new HashMap<String, City>(cities.size() * 2);
+
+        for (var city = 0; city < cities.size(); city++) {
+            if (cities.get(city).getId() != city || index.put(cities.get(city).getName(), cities.get(city)) != null) {
+                throw new Exception("City " + cities.get(city).getName() + " is on the map twice or out of order");
+            }
+
+            if (offsets[city] > offsets[city + 1]) {
+                throw new Exception("The routes of " + cities.get(city).getName() + " are out of order");
+            }
+        }
+
+        for (var neighbour : adjacency) {
+            if (neighbour < 0 || neighbour >= cities.size()) {
+                throw new Exception("A route leads to the unknown city #" + neighbour);
+            }
+        }
+
+        return new CityGraph(cities, index, offsets, adjacency);
+    }
+
+    /**
+     * Builds a graph from cities and routes added in the order of the map.
+     */
+    public static final class Builder {
+        /* the cities, indexed by id */
+        private final ArrayList<City> cities = new ArrayList<>();
+
+        /* the cities by name */
+        private final HashMap<String, City> index = new HashMap<>();
+
+        /* the routes connected so far, as the two cities packed in a long with the lower id first */
+        private final HashSet<Long> connected = new HashSet<>();
+
+        /* the routes, two cities per route */
+        private int[] routes = new int[256];
+        private int routeCount = 0;
+
+        /**
+         * Adds a city with the next id.
+         * @param name the name of the city
+         * @param colour the colour of the city
+         * @return the city
+         * @throws Exception when there already is a city with the name.
+         */
+        public City addCity(String name, Colour colour) throws Exception {
+            if (index.containsKey(name)) {
+                throw new Exception("City " + name + " is on the map twice");
+            }
+
+            City.addCity(cities, cities.size(), name, colour);
+            var city = cities.get(cities.size() - 1);
+            index.put(name, city);
+
+            return city;
+        }
+
+        /**
+         * Connects two cities together by name.
+         * @param firstCityName the name of the first city
+         * @param secondCityName the name of the second city
+         * @throws Exception if the cities don't exist or are already connected.
+         */
+        public void connect(String firstCityName, String secondCityName) throws Exception {
+            var first = index.get(firstCityName);
+            var second = index.get(secondCityName);
+
+            if (first == null || second == null) {
+                throw new Exception("Can't connect " + firstCityName + " to " + secondCityName + ", the city isn't on the map");
+            }
+
+            connect(first.getId(), second.getId());
+        }
+
+        /**
+         * Connects two cities together.
+         * @param first the id of the first city
+         * @param second the id of the second city
+         * @throws Exception if the cities are the same or already connected.
+         */
+        public void connect(int first, int second) throws Exception {
+            if (first == second) {
+                throw new Exception("City " + cities.get(first).getName() + " can't be connected to itself");
+            }
+
+            var key = (long) Math.min(first, second) << 32 | Math.max(first, second);
+
+            if (!connected.add(key)) {
+                throw new Exception("Neighbour has already been attached to this city: " + cities.get(first).getName() + " - " + cities.get(second).getName());
+            }
+
+            if (routeCount * 2 == routes.length) {
+                routes = Arrays.copyOf(routes, routes.length * 2);
+            }
+
+            routes[routeCount * 2] = first;
+            routes[routeCount * 2 + 1] = second;
+            routeCount += 1;
+        }
+
+        /**
+         * Compiles the graph.
+         * @return the graph
+         * @throws Exception when the map is too small or too large (see checkCityCount).
+         */
+        public CityGraph build() throws Exception {
+            checkCityCount(cities.size());
+
+            // counting the neighbours of each city, then placing each route at both of its ends in the order of the map.
+            var offsets = new int[cities.size() + 1];
+
+            for (var i = 0; i < routeCount * 2; i++) {
+                offsets[routes[i] + 1] += 1;
+            }
+
+            for (var city = 0; city < cities.size(); city++) {
+                offsets[city + 1] += offsets[city];
+            }
+
+            var adjacency = new int[routeCount * 2];
+            var next = Arrays.copyOf(offsets, cities.size());
+
+            for (var i = 0; i < routeCount; i++) {
+                var first = routes[i * 2];
+                var second = routes[i * 2 + 1];
+
+                adjacency[next[first]++] = second;
+                adjacency[next[second]++] = first;
+            }
+
+            return new CityGraph(cities, index, offsets, adjacency);
+        }
+    }
+}
@@ -17,9 +17,6 @@ public class Cube {
     /* the id of the city the cube is on (-1 represents no city) */
     private int city = -1;
 
-    /* List of cubes used during the building stage */
-    private static final ArrayList<Cube> cubes = new ArrayList<>();
-
     /**
      * Sets the id and the colour of the cube
      * @param id the id of the cube (which is the index in the list)
@@ -54,14 +51,6 @@ public class Cube {
         return id;
     }
 
-    /**
-     * Gets all the cubes on the board
-     * @return the old cubes on the board
-     */
-    public static ArrayList<Cube> getCubes() {
-        return cubes;
-    }
-
     /**
      * Creates a clone of the cubes.
      * @param cubes cubes to clone
@@ -125,11 +114,12 @@ public class Cube {
     }
 
     /**
-     * Adds a new cube to the internal cube builder
+     * Adds a new cube to a list of cubes
+     * @param cubes the list of cubes being built
      * @param id the id of the cubes
      * @param colour the colour of the cube
      */
-    public static void addCube(int id, Colour colour) {
+    public static void addCube(ArrayList<Cube> cubes, int id, Colour colour) {
         cubes.add(new Cube(id, colour));
     }
 
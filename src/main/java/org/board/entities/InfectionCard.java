@@ -6,9 +6,6 @@ import java.util.ArrayList;
  * Represents an infection card.
  */
 public class InfectionCard {
-    /* a list of infection for the building stage */
-    private final static ArrayList<InfectionCard> cards = new ArrayList<>();
-
     /* the id of the infection card (matches the city id) */
     final private int id;
 
@@ -20,30 +17,6 @@ public class InfectionCard {
         this.id = id;
     }
 
-    /**
-     * Gets a list oll the infection cards
-     * @return array list of cards
-     */
-    public static ArrayList<InfectionCard> getCards() {
-        return cards;
-    }
-
-    /**
-     * Clones a list of infection cards.
-     * @param cards infection cards list
-     * @return the cloned infection cards
-     */
-    public static ArrayList<InfectionCard> getCards(ArrayList<InfectionCard> cards) {
-        var newCards = new ArrayList<InfectionCard>();
-
-        for (var card : cards) {
-            var newCard = new InfectionCard(card.getId());
-            newCards.add(newCard);
-        }
-
-        return newCards;
-    }
-
     /**
      * Gets the id of the infection card.
      */
@@ -52,10 +25,11 @@ public class InfectionCard {
     }
 
     /**
-     * Adds a new card to the infection card builder
+     * Adds a new card to a list of infection cards
+     * @param cards the list of cards being built
      * @param id the id of the city
      */
-    public static void addCard(int id) {
+    public static void addCard(ArrayList<InfectionCard> cards, int id) {
         cards.add(new InfectionCard(id));
     }
 
@@ -0,0 +1,77 @@
+package org.board.entities;
+
+import org.board.enumerables.OptionType;
+
+/**
+ * Packs the data of an option into a single long, so that the search can generate and perform moves without
+ * building an option for each of them. Every field is stored plus one, so that unset fields (-1) are stored as 0.
+ * Layout from the lowest bits: type (4 bits), card (16 bits), end city (16 bits), end player (4 bits), suit (4 bits).
+ * The card is the city of the card disposed by the move, so State and SearchState moves are interchangeable.
+ */
+public final class Move {
+    /* all the option types, indexed by ordinal */
+    private static final OptionType[] TYPES = OptionType.values();
+
+    private static final int CARD_SHIFT = 4;
+    private static final int CITY_SHIFT = 20;
+    private static final int PLAYER_SHIFT = 36;
+    private static final int SUIT_SHIFT = 40;
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move.
+     * @param type the type of action to perform
+     * @param card the card to dispose (-1 when unused)
+     * @param endCity the city to end on (-1 when unused)
+     * @param endPlayer the player to end on (-1 when unused)
+     * @param suit the colour suit to work on (-1 when unused)
+     * @return the packed move
+     */
+    public static long of(OptionType type, int card, int endCity, int endPlayer, int suit) {
+        return type.ordinal()
+                | (long) (card + 1) << CARD_SHIFT
+                | (long) (endCity + 1) << CITY_SHIFT
+                | (long) (endPlayer + 1) << PLAYER_SHIFT
+                | (long) (suit + 1) << SUIT_SHIFT;
+    }
+
+    /**
+     * Packs the data of an option.
+     * @param option the option
+     * @return the packed move
+     */
+    public static long of(Option option) {
+        return of(option.getType(), option.getDisposeCard(), option.getEndCity(), option.getEndPlayer(), option.getSuit());
+    }
+
+    /**
+     * Gets the bits of a card, to be or'ed into a move packed without a card.
+     * @param card the card
+     * @return the card bits
+     */
+    public static long card(int card) {
+        return (long) (card + 1) << CARD_SHIFT;
+    }
+
+    public static OptionType getType(long move) {
+        return TYPES[(int) (move & 0xF)];
+    }
+
+    public static int getCard(long move) {
+        return (int) ((move >>> CARD_SHIFT) & 0xFFFF) - 1;
+    }
+
+    public static int getEndCity(long move) {
+        return (int) ((move >>> CITY_SHIFT) & 0xFFFF) - 1;
+    }
+
+    public static int getEndPlayer(long move) {
+        return (int) ((move >>> PLAYER_SHIFT) & 0xF) - 1;
+    }
+
+    public static int getSuit(long move) {
+        return (int) ((move >>> SUIT_SHIFT) & 0xF) - 1;
+    }
+}
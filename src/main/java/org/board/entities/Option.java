@@ -2,6 +2,8 @@ package org.board.entities;
 
 import org.board.enumerables.OptionType;
 
+import java.util.function.Supplier;
+
 
 /**
  * Represents a possible action by a player at any given point in the game.
@@ -23,17 +25,47 @@ public class Option {
     /* type of action to perform */
     private OptionType type = OptionType.Invalid;
 
-    /* the name of the option (auto generated) */
-    final String name;
+    /* the name of the option (auto generated, null until it is rendered) */
+    private String name;
+
+    /* renders the name the first time it is needed */
+    private Supplier<String> nameSupplier;
 
     public Option(String name) {
         this.name = name;
     }
 
+    /**
+     * Creates the option of a packed move, rendering its name only when it is displayed.
+     * @param move the packed move
+     * @param nameSupplier renders the name of the option
+     */
+    public Option(long move, Supplier<String> nameSupplier) {
+        this.nameSupplier = nameSupplier;
+        this.type = Move.getType(move);
+        this.disposeCard = Move.getCard(move);
+        this.endCity = Move.getEndCity(move);
+        this.endPlayer = Move.getEndPlayer(move);
+        this.suit = Move.getSuit(move);
+    }
+
     public String getName() {
+        if (name == null) {
+            name = nameSupplier.get();
+            nameSupplier = null;
+        }
+
         return name;
     }
 
+    /**
+     * Gets the option packed into a move.
+     * @return the packed move
+     */
+    public long getMove() {
+        return Move.of(this);
+    }
+
     /**
      * Gets the type of action to perform
      * @return action type
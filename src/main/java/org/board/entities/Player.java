@@ -4,14 +4,12 @@ import org.board.enumerables.Colour;
 import org.board.enumerables.Role;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Represents a player in the game.
  */
 public class Player {
-    /* list of players for initialisation */
-    private final static ArrayList<Player> players = new ArrayList<>();
-
     /* the role of the user */
     final private Role role;
 
@@ -24,8 +22,14 @@ public class Player {
     /* the id of the city the player is located*/
     private int city;
 
-    /* keeps tracks of all the cards in the player hand */
-    final private ArrayList<PlayerCard> cards = new ArrayList<>();
+    /* keeps tracks of all the cards in the player hand, a bit for the city of each card (grows with the cities) */
+    private long[] cards = new long[1];
+
+    /* the number of cards of each suit in the player hand, indexed by the colour ordinal */
+    private int[] suits = new int[Colour.values().length];
+
+    /* the number of cards in the player hand */
+    private int handSize = 0;
 
     /**
      * Creates a new player
@@ -64,27 +68,58 @@ public class Player {
     }
 
     /**
-     * Gets all the cards assigned to players
-     * @return list of cards
+     * Gets the number of cards in the player hand.
+     * @return the hand size
      */
-    public ArrayList<PlayerCard> getHand() {
-        return cards;
+    public int getHandSize() {
+        return handSize;
     }
 
     /**
-     * Gets the player city
-     * @return player city
+     * Gets the number of cards of a suit in the player hand.
+     * @param suit the colour ordinal of the suit
+     * @return the card count
      */
-    public int getCity() {
-        return city;
+    public int getSuitCount(int suit) {
+        return suits[suit];
+    }
+
+    /**
+     * Checks if the player holds the card of a city.
+     * @param city the city of the card
+     * @return true when the card is in the player hand
+     */
+    public boolean hasCard(int city) {
+        var word = city >>> 6;
+        return word < cards.length && (cards[word] & 1L << city) != 0;
+    }
+
+    /**
+     * Gets the first card in the player hand from a city on, walking the hand in city order:
+     * for (var city = player.nextCard(0); city != -1; city = player.nextCard(city + 1)).
+     * @param city the city to search from
+     * @return the city of the card, -1 when there are no more cards
+     */
+    public int nextCard(int city) {
+        var word = city >>> 6;
+        if (word >= cards.length) return -1;
+
+        var bits = cards[word] & -1L << city;
+
+        while (bits == 0) {
+            if (++word == cards.length) return -1;
+            bits = cards[word];
+        }
+
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
     }
 
     /**
-     * Gets the players created during initial creation.
-     * @return list of players
+     * Gets the player city
+     * @return player city
      */
-    public static ArrayList<Player> getPlayers() {
-        return players;
+    public int getCity() {
+        return city;
     }
 
     /**
@@ -98,7 +133,9 @@ public class Player {
         for(var player : players) {
             var newPlayer = new Player(player.name, player.pawn, player.role);
             newPlayer.city = player.city;
-            newPlayer.cards.addAll(player.cards);
+            newPlayer.cards = player.cards.clone();
+            newPlayer.suits = player.suits.clone();
+            newPlayer.handSize = player.handSize;
             newPlayers.add(newPlayer);
         }
 
@@ -107,9 +144,10 @@ public class Player {
 
     /**
      * Gets all roles that hasn't been assigned to a player.
+     * @param players the players of the game.
      * @return a list of available roles.
      */
-    public static ArrayList<String> getAvailableRoles() {
+    public static ArrayList<String> getAvailableRoles(ArrayList<Player> players) {
         Role[] roles = Role.values();
         var parsedRoles = new ArrayList<String>();
 
@@ -139,43 +177,42 @@ public class Player {
 
     /**
      * Adds a card to the player hand
-     * @param card card to add to the player hand.
+     * @param card card to add to the player hand (a city card).
      */
     public void addCard(PlayerCard card) {
-        cards.add(card);
+        var word = card.getCity() >>> 6;
+
+        if (word >= cards.length) {
+            cards = Arrays.copyOf(cards, word + 1);
+        }
+
+        cards[word] |= 1L << card.getCity();
+        suits[card.getColour().ordinal()] += 1;
+        handSize += 1;
     }
 
     /**
      * Removes a card from the player hand
-     * @param index the index of card to remove
-     * @return the card removed
+     * @param card the card to remove
+     * @throws Exception when the card isn't in the player hand
      */
-    public PlayerCard removeCard(int index) {
-        return cards.remove(index);
+    public void removeCard(PlayerCard card) throws Exception {
+        if (!hasCard(card.getCity())) {
+            throw new Exception("Player " + name + " doesn't hold the card of city #" + card.getCity());
+        }
+
+        cards[card.getCity() >>> 6] &= ~(1L << card.getCity());
+        suits[card.getColour().ordinal()] -= 1;
+        handSize -= 1;
     }
 
     /**
-     * Remove n cards of a particular suit from a players hand.
-     * @param suit the colour of card
-     * @param numberCards the number of card to remove
-     * @throws Exception if the cards doesn't reach the required numbers
+     * Removes all the cards from the player hand.
      */
-    public void removeNCardsOfSuit(Colour suit, int numberCards) throws Exception {
-        int count = 0;
-
-        var hand = new ArrayList<>(cards);
-
-        for (var card : hand) {
-            if (count >= numberCards) break;
-            if (card.getColour() != suit) continue;
-
-            count += 1;
-            cards.remove(card);
-        }
-
-        if (count != numberCards) {
-            throw new Exception("Something terribly wrong happened couldn't get suit " + suit + " of count 5 instead got " + count);
-        }
+    public void clearHand() {
+        Arrays.fill(cards, 0);
+        Arrays.fill(suits, 0);
+        handSize = 0;
     }
 
     /**
@@ -188,22 +225,23 @@ public class Player {
 
     /**
      * Adds a players to the players list
+     * @param players the players of the game
      * @param name name of the player
      * @param pawn the pawn for the player
      * @param role the role of the player
      * @throws Exception when the constraints on pawn ond roles fails.
      */
-    public static void addPlayer(String name, int pawn, Role role) throws Exception {
+    public static void addPlayer(ArrayList<Player> players, String name, int pawn, Role role) throws Exception {
         if (players == null) {
             throw new Exception("Players hasn't been instantiated");
         }
 
         // validate the constraints on roles
-        validatePlayerRoleConstraints(role);
-        validatePlayerPawnConstraints(pawn);
+        validatePlayerRoleConstraints(players, role);
+        validatePlayerPawnConstraints(players, pawn);
 
         if (name == null) {
-            name = autoGenerateName();
+            name = autoGenerateName(players);
         }
 
         var player = new Player(name, pawn, role);
@@ -213,18 +251,20 @@ public class Player {
 
     /**
      * Auto generates a name for the user
+     * @param players the players of the game
      * @return autogenerated name "Player + n"
      */
-    private static String autoGenerateName() {
+    private static String autoGenerateName(ArrayList<Player> players) {
         return "Player " + (players.size() + 1);
     }
 
     /**
      * Checks if the role is not in use.
+     * @param players the players of the game.
      * @param role the role of the user.
      * @throws Exception when the user role is in use.
      */
-    private static void validatePlayerRoleConstraints(Role role) throws Exception {
+    private static void validatePlayerRoleConstraints(ArrayList<Player> players, Role role) throws Exception {
         for (Player player: players) {
             if (player.getRole() == role) {
                 throw new Exception("This role has already been assigned to a user.");
@@ -234,10 +274,11 @@ public class Player {
 
     /**
      * Checks if the pawn is not in use
+     * @param players the players of the game.
      * @param pawn the pawn to validate.
      * @throws Exception when the pawn is used
      */
-    private static void validatePlayerPawnConstraints(int pawn) throws Exception {
+    private static void validatePlayerPawnConstraints(ArrayList<Player> players, int pawn) throws Exception {
         for (Player player : players) {
             if (player.getPawn() == pawn) {
                 throw new Exception("This pawn has already been assigned to a user.");
@@ -247,11 +288,12 @@ public class Player {
 
     /**
      * Prints players cards
+     * @param cardsByCity the city cards of the game, indexed by city.
      */
-    public void printCards() {
+    public void printCards(PlayerCard[] cardsByCity) {
         System.out.println("Player " + name + " cards");
-        for (var card : cards) {
-            System.out.println(card);
+        for (var city = nextCard(0); city != -1; city = nextCard(city + 1)) {
+            System.out.println(cardsByCity[city]);
         }
     }
 }
@@ -9,9 +9,6 @@ import java.util.ArrayList;
  * Represents a player card
  */
 public class PlayerCard {
-    /* list of card for initialisation process */
-    final private static ArrayList<PlayerCard> cards = new ArrayList<>();
-
     /* the city the card represent (-1 for non-city cards) */
     final private int city;
 
@@ -58,36 +55,13 @@ public class PlayerCard {
     }
 
     /**
-     * Returns players card from initialisation process.
-     * @return player cards
-     */
-    public static ArrayList<PlayerCard> getCards() {
-        return cards;
-    }
-
-    /**
-     * Clones a list of player cards.
-     * @param cards player cards
-     * @return newly clone player cards
-     */
-    public static ArrayList<PlayerCard> getCards(ArrayList<PlayerCard> cards) {
-        var newCards = new ArrayList<PlayerCard>();
-
-        for (var card : cards) {
-            var newCard = new PlayerCard(card.city, card.type, card.colour);
-            newCards.add(newCard);
-        }
-
-        return newCards;
-    }
-
-    /**
-     * Add new cards to initialisation card list
+     * Add new cards to a list of player cards
+     * @param cards the list of cards being built.
      * @param city the id of the card.
      * @param type type of the card.
      * @param colour the colour of the card.
      */
-    public static void addCard(int city, Card type, Colour colour) {
+    public static void addCard(ArrayList<PlayerCard> cards, int city, Card type, Colour colour) {
         cards.add(new PlayerCard(city, type, colour));
     }
 
@@ -9,8 +9,6 @@ public class Station {
     private final int id;
     private int city = -1;
 
-    private final static ArrayList<Station> stations = new ArrayList<>();
-
     /**
      * Sets station id;
      * @param id id of the station
@@ -48,6 +46,13 @@ public class Station {
         this.city = city;
     }
 
+    /**
+     * Removes the station from the board.
+     */
+    public void remove() {
+        this.city = -1;
+    }
+
     /**
      * Gets the station id.
      * @return the id of the station.
@@ -60,21 +65,14 @@ public class Station {
     /* Static Methods */
 
     /**
-     * Adds a new station to the initialisation stations list
+     * Adds a new station to a list of stations
+     * @param stations the list of stations being built.
      * @param id the id of the station.
      */
-    public static void addStation(int id) {
+    public static void addStation(ArrayList<Station> stations, int id) {
         stations.add(new Station(id));
     }
 
-    /**
-     * Gets the stations from the loading process.
-     * @return the list of station created during loading
-     */
-    public static ArrayList<Station> getStations() {
-        return stations;
-    }
-
     /**
      * Clones a list of stations.
      * @param stations list of stations.
@@ -10,6 +10,9 @@ public enum Colour {
     Yellow,
     Black;
 
+    /* the human-readable name, built once */
+    private final String label = toLabel(name());
+
     /**
      * Converts a string to colour.
      * @param colour the string version of the colour
@@ -24,9 +27,18 @@ public enum Colour {
      * @return a human-readable string.
      */
     public String toString() {
+        return label;
+    }
+
+    /**
+     * Converts a constant name to a human-readable string.
+     * @param name the name of the constant
+     * @return a human-readable string.
+     */
+    private static String toLabel(String name) {
         StringBuilder builder = new StringBuilder();
 
-        for (char rune : this.name().toCharArray()) {
+        for (char rune : name.toCharArray()) {
             if (rune < 97 && !builder.isEmpty()) {
                 builder.append(" ");
             }
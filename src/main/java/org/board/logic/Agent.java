@@ -6,6 +6,11 @@ import org.board.utils.IO;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
 
 
 public class Agent {
@@ -16,28 +21,245 @@ public class Agent {
         }
     }
 
+    /* The parts of a state the evaluation function looks at, kept while the search changes the state */
+    protected record Metrics(int freeCubes, int infectionRate, int cures, int epidemics, int outbreaks, int stations, boolean running, boolean failed, int turn) {
+        static Metrics of(State state) {
+            return new Metrics(state.getFreeCubesCount(), state.getInfectionRateMarkerState(), state.getCureCount(),
+                    state.getEpidemics(), state.getOutbreakMarkerState(), state.getResearchStationsCount(),
+                    state.isRunning(), state.isFailed(), state.getTurn());
+        }
+
+        static Metrics of(SearchState state) {
+            return new Metrics(state.getFreeCubesCount(), state.getInfectionRateMarkerState(), state.getCureCount(),
+                    state.getEpidemics(), state.getOutbreakMarkerState(), state.getResearchStationsCount(),
+                    state.isRunning(), state.isFailed(), state.getTurn());
+        }
+    }
+
 
     /* Weights for evaluation function */
-    final int CUBES_FREED_WEIGHT = 20;
-    final int INFECTION_RATE_WEIGHT = -50;
-    final int CURE_WEIGHT = 200;
-    final int EPIDEMICS_WEIGHT = -80;
-    final int OUTBREAK_WEIGHT = -100;
-    final int GAME_OVER_WEIGHT = -100;
-    final int RESEARCH_STATION_WEIGHT = 60;
-    final int WINNING_WEIGHT = 1000;
+    private Weights weights = Weights.DEFAULT;
 
 
     /*  agent name */
     static final public String NAME = "Rupert";
 
+    /* deadline of a search that isn't bounded in time */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
     /* player associated to agent */
     private Player player;
 
+    /* number of threads used to traverse the game tree (1 means sequential) */
+    private int parallelism = 1;
+
+    /* nodes with an action count up to the cutoff fork their children as separate tasks */
+    private int parallelCutoff = 2;
+
+    /* work-stealing pool for the parallel search (created on first use) */
+    private ForkJoinPool pool;
+
+    /* memory footprint of the transposition table in megabytes (0 disables the table) */
+    private int transpositionTableSize = 16;
+
+    /* cache of searched subtrees shared by all search threads (created on first use, null when disabled) */
+    private TranspositionTable transpositionTable;
+
+    /* number of actions searched ahead when the search has no time budget */
+    private int depth = 4;
+
+    /* deepest iteration of a search with a time budget */
+    private int maxDepth = 16;
+
+    /* time budget in milliseconds for each action the agent plays (0 searches at a fixed depth) */
+    private long playTimeBudget = 0;
+
+    /* time budget in milliseconds for each action suggested when consulted (0 searches at a fixed depth) */
+    private long consultTimeBudget = 0;
+
+    /* follow the searched tree over the following actions while the game goes as the search predicted */
+    private boolean planReuse = true;
+
+    /* action count of the leaves of the last search (0 when it isn't known) */
+    private int searchedDepth = 0;
+
+    /* action count of the leaves of the tree the agent is following (0 when there is no plan) */
+    private int plannedDepth = 0;
+
+    /* hash of the state the plan expects at the next action */
+    private long plannedHash;
+
+    /* number of turns the agent played, a plan is only followed within the turn it was searched for */
+    private long turns = 0;
+
+    /* turn the plan was searched for */
+    private long plannedTurn = -1;
+
+    /* number of deck orders sampled and averaged over by the search (0 searches the real order of the decks) */
+    private int samples = 0;
+
+    /* seed of the deck orders sampled by the search (kept with the plan so it searches the same samples) */
+    private long sampleSeed;
+
+    /* search on compact copies of the state (SearchState) instead of undoing actions on a State */
+    private boolean compactSearch = false;
+
+    /* don't print the progress of the game (used when agents play games without players watching) */
+    private boolean quiet = false;
+
+    /* number of nodes visited by the searches of the agent (by every search thread) */
+    protected final LongAdder nodes = new LongAdder();
+
     public void setPlayer(Player player) {
         this.player = player;
     }
 
+    /**
+     * Sets the number of threads used to traverse the game tree.
+     * @param parallelism the thread count, anything below 2 runs the search sequentially.
+     */
+    public void setParallelism(int parallelism) {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Gets the number of threads used to traverse the game tree.
+     * @return the thread count
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the deepest action count whose children are still searched as parallel tasks. Nodes below the cutoff
+     * are traversed sequentially by the thread that owns them.
+     * @param parallelCutoff the action count (1 - 4)
+     */
+    public void setParallelCutoff(int parallelCutoff) {
+        this.parallelCutoff = parallelCutoff;
+    }
+
+    /**
+     * Sets the memory footprint of the transposition table, replacing the current table. The table is created on
+     * the first search.
+     * @param megabytes the size of the table, 0 disables the table.
+     */
+    public void setTranspositionTableSize(int megabytes) {
+        transpositionTableSize = megabytes;
+        transpositionTable = null;
+        // the plan is followed through the subtrees stored in the table.
+        plannedDepth = 0;
+    }
+
+    /**
+     * Gets the transposition table used by the search, creating it when the agent hasn't searched yet.
+     * @return the table or null when it is disabled.
+     */
+    public TranspositionTable getTranspositionTable() {
+        createTranspositionTable();
+        return transpositionTable;
+    }
+
+    /**
+     * Creates the transposition table unless it exists or is disabled. Called before a search starts its threads.
+     */
+    private void createTranspositionTable() {
+        if (transpositionTable == null && transpositionTableSize > 0) {
+            transpositionTable = new TranspositionTable(transpositionTableSize);
+        }
+    }
+
+    /**
+     * Sets the number of actions searched ahead when the search has no time budget.
+     * @param depth the search depth
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Sets the deepest iteration of a search with a time budget.
+     * @param maxDepth the maximum search depth
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the time budget for each action the agent plays.
+     * @param playTimeBudget the budget in milliseconds, 0 searches at a fixed depth.
+     */
+    public void setPlayTimeBudget(long playTimeBudget) {
+        this.playTimeBudget = playTimeBudget;
+    }
+
+    /**
+     * Sets the time budget for each action suggested when the agent is consulted.
+     * @param consultTimeBudget the budget in milliseconds, 0 searches at a fixed depth.
+     */
+    public void setConsultTimeBudget(long consultTimeBudget) {
+        this.consultTimeBudget = consultTimeBudget;
+    }
+
+    /**
+     * Sets whether the agent follows the tree searched for an action over the following actions, instead of
+     * searching again for each of them. The tree is dropped as soon as the game leaves it.
+     * @param planReuse true to reuse the searched tree.
+     */
+    public void setPlanReuse(boolean planReuse) {
+        this.planReuse = planReuse;
+        plannedDepth = 0;
+    }
+
+    /**
+     * Sets the number of deck orders sampled by the search. Each sample reshuffles the cards that haven't been drawn
+     * yet, the options are searched on every sample and their outcomes averaged. More samples give a better estimate
+     * of the unknown future at the cost of a proportionally longer search.
+     * @param samples the sample count, 0 searches the real order of the decks.
+     */
+    public void setSamples(int samples) {
+        this.samples = samples;
+    }
+
+    /**
+     * Sets whether the sequential part of the search runs on compact search states, copying the state at every node,
+     * instead of performing and undoing actions on a State. Both searches follow the same rules, except for the
+     * cards disposed by a cure when the hand holds more than five cards of the colour (see SearchState).
+     * @param compactSearch true to search on search states.
+     */
+    public void setCompactSearch(boolean compactSearch) {
+        this.compactSearch = compactSearch;
+    }
+
+    /**
+     * Sets whether the agent prints what it is doing while it plays.
+     * @param quiet true to play without printing.
+     */
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    /**
+     * Sets the weights of the evaluation function.
+     * @param weights the weights (see Weights.load for tuned weights)
+     */
+    public void setWeights(Weights weights) {
+        this.weights = weights;
+
+        // the subtrees stored in the table and the plan were rated with the previous weights.
+        if (transpositionTable != null) transpositionTable.clear();
+        plannedDepth = 0;
+    }
+
+    public Weights getWeights() {
+        return weights;
+    }
+
     /**
      * Gets the player associated to the agent.
      * @return a player
@@ -46,21 +268,73 @@ public class Agent {
         return player;
     }
 
+    /**
+     * Gets the number of nodes the searches of the agent visited so far, one node for each move performed.
+     * @return the node count
+     */
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+
     /**
      * Plays the game by picking the best outcome out of a series of outs.
      * @param state the state of the game.
      * @throws Exception whe the game state errors.
      */
     public void play(State state) throws Exception {
-        System.out.println("Agent is performing his actions");
+        if (!quiet)
+            System.out.println("Agent is performing his actions");
+
+        turns += 1;
 
         for (int i = 1; i <= 4; i++) {
-            var outcomes = getRankedBestOptions(state);
+            var outcomes = getPlannedOptions(state, i);
             var bestOutcome = outcomes.get(0);
             state.performAction(bestOutcome.option(), i);
+            // the state the plan was searched through (the actions of a turn don't depend on chance).
+            plannedHash = state.getHash();
         }
+
+        // the plan ends with the turn, the next turn (possibly of another seat) searches again.
+        plannedHash = 0;
+        plannedDepth = 0;
     }
 
+    /**
+     * Gets the ranked options for an action the agent plays. While the state is the one reached by the previous
+     * action and the action is within the searched tree, the options are ranked from the subtrees searched for the
+     * previous action (stored in the transposition table) instead of a new, deeper search. Otherwise the game has
+     * left the plan, for example through the cards drawn at the end of a turn, and the options are searched again.
+     * A plan is only followed within the turn it was searched for, and within the time budget of the action: when
+     * the subtrees are no longer in the table and the budget runs out, the options are searched again in the time
+     * left.
+     * @param state the state of the game.
+     * @param count the action count within the turn (1 - 4).
+     * @return a list of outcomes
+     * @throws Exception when the game state encounters an error state.
+     */
+    protected ArrayList<Outcome> getPlannedOptions(State state, int count) throws Exception {
+        var timeBudget = playTimeBudget;
+
+        if (planReuse && plannedTurn == turns && count <= plannedDepth && state.getHash() == plannedHash) {
+            var start = System.nanoTime();
+            var deadline = timeBudget > 0 ? start + timeBudget * 1_000_000 : NO_DEADLINE;
+
+            try {
+                return rankOptions(state, state.getAllPossibleActions(), count, plannedDepth, deadline);
+            } catch (DeadlineExceeded e) {
+                // at least a millisecond, as a budget of 0 would search at the fixed depth.
+                timeBudget = Math.max(1, timeBudget - (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+
+        searchedDepth = 0;
+        var ranking = getRankedBestOptions(state, count, timeBudget);
+        plannedDepth = searchedDepth;
+        plannedTurn = turns;
+
+        return ranking;
+    }
 
 
     /**
@@ -70,11 +344,135 @@ public class Agent {
      * @throws Exception when the game state encounters an error state.
      */
     public ArrayList<Outcome> getRankedBestOptions(State state) throws Exception {
+        return getRankedBestOptions(state, 0);
+    }
+
+    /**
+     * Gets a list of all the outcomes ranked by their points, for the first action of a turn.
+     * @param state the state of the game.
+     * @param timeBudget the time budget in milliseconds, 0 searches at a fixed depth.
+     * @return a list of outcomes
+     * @throws Exception when the game state encounters an error state.
+     */
+    public ArrayList<Outcome> getRankedBestOptions(State state, long timeBudget) throws Exception {
+        return getRankedBestOptions(state, 1, timeBudget);
+    }
+
+    /**
+     * Gets a list of all the outcomes ranked by their points, searching deeper and deeper until the time budget
+     * runs out. The ranking of the deepest search that completed is returned and each search visits the options in
+     * the order ranked by the previous one. The first search (a single action deep) always completes.
+     * @param state the state of the game.
+     * @param count the action count within the turn (1 - 4), so that the search ends the turn when the game does.
+     * @param timeBudget the time budget in milliseconds, 0 searches at a fixed depth.
+     * @return a list of outcomes
+     * @throws Exception when the game state encounters an error state.
+     */
+    public ArrayList<Outcome> getRankedBestOptions(State state, int count, long timeBudget) throws Exception {
+        var options = state.getAllPossibleActions();
+        sampleSeed = state.getHash();
+
+        if (timeBudget <= 0) {
+            searchedDepth = count + depth - 1;
+            return rankOptions(state, options, count, searchedDepth, NO_DEADLINE);
+        }
+
+        var deadline = System.nanoTime() + timeBudget * 1_000_000;
+        var ranking = rankOptions(state, options, count, count, NO_DEADLINE);
+        searchedDepth = count;
+
+        for (int depth = 2; depth <= maxDepth && System.nanoTime() < deadline; depth++) {
+            // searching the best options of the previous iteration first.
+            options = new ArrayList<>();
+            for (var outcome : ranking) {
+                options.add(outcome.option());
+            }
+
+            try {
+                ranking = rankOptions(state, options, count, count + depth - 1, deadline);
+                searchedDepth = count + depth - 1;
+            } catch (DeadlineExceeded e) {
+                break;
+            }
+        }
+
+        return ranking;
+    }
+
+    /**
+     * Rates each option by searching the game tree to a fixed depth.
+     * @param state the state of the game.
+     * @param options the options to rate.
+     * @param count the action count of the options.
+     * @param depth the action count of the leaves.
+     * @param deadline the time (System.nanoTime) the search must complete by.
+     * @return the options ranked by their outcome.
+     * @throws Exception when the game state encounters an error state.
+     */
+    private ArrayList<Outcome> rankOptions(State state, ArrayList<Option> options, int count, int depth, long deadline) throws Exception {
+        createTranspositionTable();
+        var states = new ArrayList<State>();
+
+        if (samples > 0) {
+            var random = new SplittableRandom(sampleSeed);
+
+            for (int i = 0; i < samples; i++) {
+                states.add(state.determinize(random.nextLong()));
+            }
+        } else {
+            states.add(state);
+        }
+
+        // outcomes of every option on the first sample, followed by the second sample and so on.
+        var outcomes = new ArrayList<Outcome>();
+
+        if (parallelism > 1) {
+            var tasks = new ArrayList<TraverseTask>();
+
+            for (var sample : states) {
+                for (var option : options) {
+                    tasks.add(new TraverseTask(sample, option.getMove(), count, depth, count - 1 + parallelCutoff, deadline));
+                }
+            }
+
+            outcomes.addAll(invokeAll(tasks));
+        } else {
+            var moves = new MoveBuffer();
+
+            for (var sample : states) {
+                if (compactSearch) {
+                    var searchState = SearchState.of(sample);
+
+                    for (var option : options) {
+                        outcomes.add(traverseGameTree(searchState, moves, option.getMove(), count, depth, deadline));
+                    }
+                    continue;
+                }
+
+                var searchState = prepareSearchState(sample);
+
+                for (var option : options) {
+                    outcomes.add(traverseGameTree(searchState, moves, option.getMove(), count, depth, deadline));
+                }
+            }
+        }
+
         var ranking = new ArrayList<Outcome>();
 
-        for (var option : state.getAllPossibleActions()) {
-            var outcome = traverseGameTree(state, option);
-            ranking.add(outcome);
+        // averaging the outcomes of each option over the samples (the search outcomes don't carry their option)
+        for (int i = 0; i < options.size(); i++) {
+            double rating = 0;
+            double epidemics = 0;
+            double cards = 0;
+
+            for (int sample = 0; sample < states.size(); sample++) {
+                var outcome = outcomes.get(sample * options.size() + i);
+                rating += outcome.rating();
+                epidemics += outcome.epidemics();
+                cards += outcome.cards();
+            }
+
+            ranking.add(new Outcome(options.get(i), epidemics / states.size(), rating / states.size(), cards / states.size()));
         }
 
         // sort ranking based on rating and epidemics
@@ -102,39 +500,385 @@ public class Agent {
      * @throws Exception when the state fails.
      */
     public Outcome traverseGameTree(State state, Option action, int count) throws Exception {
-        // clone the state
-        var newState = state.deepClone();
+        createTranspositionTable();
+        var outcome = traverseGameTree(prepareSearchState(state), new MoveBuffer(), action.getMove(), count, depth, NO_DEADLINE);
+        return new Outcome(action, outcome.epidemics(), outcome.rating(), outcome.cards());
+    }
+
+    /**
+     * Creates the copy of a state the search performs and undoes actions on, so that a whole search runs on a
+     * single state instead of cloning the state at every node.
+     * @param state the state of the board.
+     * @return a copy of the state recording its actions.
+     * @throws Exception when the state fails to clone.
+     */
+    protected static State prepareSearchState(State state) throws Exception {
+        var searchState = state.deepClone();
         // turning off action logging
-        newState.debug = false;
+        searchState.debug = false;
+        searchState.setUndoable(true);
+        return searchState;
+    }
+
+    /**
+     * Traverse the game tree down to a given depth and returns an estimate of the performance of the game tree. The
+     * move is performed on the state and undone before returning, so the state is left as it was.
+     * @param state the state of the board (recording its actions).
+     * @param moves the buffer the moves of the nodes are generated into (left as it was).
+     * @param move the packed move to perform.
+     * @param count what action count is it (counting on into the following turns).
+     * @param depth the action count of the leaves.
+     * @param deadline the time (System.nanoTime) the search must complete by.
+     * @return outcome of the move (without an option).
+     * @throws Exception when the state fails.
+     */
+    private Outcome traverseGameTree(State state, MoveBuffer moves, long move, int count, int depth, long deadline) throws Exception {
+        if (System.nanoTime() >= deadline) {
+            throw new DeadlineExceeded();
+        }
+
+        nodes.increment();
+
+        if (count == depth) {
+            var before = Metrics.of(state);
+            state.performAction(move, getActionCount(count));
+            var after = Metrics.of(state);
+
+            var rating = rateState(before, after);
+            var epidemics = after.epidemics() - before.epidemics();
+            var cards = state.getPlayers().get(before.turn()).getHandSize();
+
+            state.undo();
+            return new Outcome(null, epidemics, rating, cards);
+        }
+
         // perform action for the current turn.
-        newState.performAction(action, count);
+        state.performAction(move, getActionCount(count));
+
+        // reuse the subtree if it has been reached through another order of actions.
+        var table = transpositionTable;
+        var key = TranspositionTable.key(state.getHash(), count, depth);
 
-        if (count == 4) {
-            var rating = rateState(state, newState);
-            var epidemics = newState.getEpidemics() - state.getEpidemics();
-            var cards = newState.getPlayers().get(state.getTurn()).getHand().size();
-            return new Outcome(action, epidemics, rating, cards);
+        if (table != null) {
+            var outcome = table.get(key);
+
+            if (outcome != null) {
+                state.undo();
+                return outcome;
+            }
         }
 
         double rating = 0;
         double epidemics = 0;
         double cards = 0;
 
-        // get all possible board ratings
-        var actions = newState.getAllPossibleActions();
+        // get all possible moves on top of the moves of the parent nodes
+        var start = moves.size();
+        state.generateMoves(moves);
+        var end = moves.size();
 
-        for (var option : actions) {
-            var outcome = traverseGameTree(newState, option, count + 1);
+        for (int i = start; i < end; i++) {
+            var outcome = traverseGameTree(state, moves, moves.get(i), count + 1, depth, deadline);
             rating += outcome.rating();
             epidemics += outcome.epidemics();
             cards += outcome.cards();
         }
 
-        rating = rating / actions.size();
-        epidemics = epidemics / actions.size();
-        cards = cards / actions.size();
+        moves.truncate(start);
+
+        rating = rating / (end - start);
+        epidemics = epidemics / (end - start);
+        cards = cards / (end - start);
+
+        var outcome = new Outcome(null, epidemics, rating, cards);
+
+        if (table != null)
+            table.put(key, outcome);
+
+        state.undo();
+        return outcome;
+    }
+
+    /**
+     * Traverse the game tree of a search state down to a given depth (see the State traversal). Each node performs
+     * its move on a copy of the state, so the state given is left untouched.
+     * @param state the search state of the board.
+     * @param moves the buffer the moves of the nodes are generated into (left as it was).
+     * @param move the packed move to perform (generated by the search state).
+     * @param count what action count is it (counting on into the following turns).
+     * @param depth the action count of the leaves.
+     * @param deadline the time (System.nanoTime) the search must complete by.
+     * @return outcome of the move (without an option).
+     * @throws Exception when the state fails.
+     */
+    private Outcome traverseGameTree(SearchState state, MoveBuffer moves, long move, int count, int depth, long deadline) throws Exception {
+        if (System.nanoTime() >= deadline) {
+            throw new DeadlineExceeded();
+        }
+
+        nodes.increment();
+        var newState = state.performAction(move, getActionCount(count));
+
+        if (count == depth) {
+            var before = Metrics.of(state);
+            var after = Metrics.of(newState);
+
+            var rating = rateState(before, after);
+            var epidemics = after.epidemics() - before.epidemics();
+            var cards = newState.getHandSize(before.turn());
+
+            return new Outcome(null, epidemics, rating, cards);
+        }
+
+        // reuse the subtree if it has been reached through another order of actions (the hashes match State).
+        var table = transpositionTable;
+        var key = TranspositionTable.key(newState.getHash(), count, depth);
+
+        if (table != null) {
+            var outcome = table.get(key);
+            if (outcome != null) return outcome;
+        }
+
+        double rating = 0;
+        double epidemics = 0;
+        double cards = 0;
+
+        var start = moves.size();
+        newState.generateMoves(moves);
+        var end = moves.size();
+
+        for (int i = start; i < end; i++) {
+            var outcome = traverseGameTree(newState, moves, moves.get(i), count + 1, depth, deadline);
+            rating += outcome.rating();
+            epidemics += outcome.epidemics();
+            cards += outcome.cards();
+        }
+
+        moves.truncate(start);
+
+        rating = rating / (end - start);
+        epidemics = epidemics / (end - start);
+        cards = cards / (end - start);
+
+        var outcome = new Outcome(null, epidemics, rating, cards);
+
+        if (table != null)
+            table.put(key, outcome);
+
+        return outcome;
+    }
+
+    /**
+     * Traverses the subtrees of each move on the work-stealing pool. The outcomes are returned in the same order
+     * as the moves so callers can accumulate them exactly like the sequential search does.
+     * @param state the state of the board.
+     * @param moves the packed moves to traverse.
+     * @param count what action count is it.
+     * @param depth the action count of the leaves.
+     * @param cutoff the deepest action count whose children are traversed as separate tasks.
+     * @param deadline the time (System.nanoTime) the search must complete by.
+     * @return the outcome of each move.
+     * @throws Exception when the state fails.
+     */
+    private ArrayList<Outcome> traverseInParallel(State state, MoveBuffer moves, int count, int depth, int cutoff, long deadline) throws Exception {
+        var tasks = new ArrayList<TraverseTask>();
+
+        for (int i = 0; i < moves.size(); i++) {
+            tasks.add(new TraverseTask(state, moves.get(i), count, depth, cutoff, deadline));
+        }
+
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Runs traversal tasks on the work-stealing pool.
+     * @param tasks the tasks to run.
+     * @return the outcome of each task, in the same order as the tasks.
+     * @throws Exception when the state fails.
+     */
+    private ArrayList<Outcome> invokeAll(ArrayList<TraverseTask> tasks) throws Exception {
+        try {
+            if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                getPool().invoke(new InvokeAllTask(tasks));
+            }
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+
+        var outcomes = new ArrayList<Outcome>();
 
-        return new Outcome(action, epidemics, rating, cards);
+        for (var task : tasks) {
+            outcomes.add(task.join());
+        }
+
+        return outcomes;
+    }
+
+    /**
+     * Traverse the game tree on the work-stealing pool, forking the children of nodes above the parallel cutoff.
+     * Ratings are accumulated in action order, so they match the sequential traversal exactly. The state is shared
+     * with the sibling tasks, so each task works on its own copy.
+     * @param state the state of the board.
+     * @param move the packed move to perform.
+     * @param count what action count is it.
+     * @param depth the action count of the leaves.
+     * @param cutoff the deepest action count whose children are traversed as separate tasks.
+     * @param deadline the time (System.nanoTime) the search must complete by.
+     * @return outcome of the move (without an option).
+     * @throws Exception when the state fails.
+     */
+    private Outcome traverseGameTreeInParallel(State state, long move, int count, int depth, int cutoff, long deadline) throws Exception {
+        if ((count >= depth || count > cutoff) && compactSearch) {
+            return traverseGameTree(SearchState.of(state), new MoveBuffer(), move, count, depth, deadline);
+        }
+
+        if (count >= depth || count > cutoff) {
+            return traverseGameTree(prepareSearchState(state), new MoveBuffer(), move, count, depth, deadline);
+        }
+
+        if (System.nanoTime() >= deadline) {
+            throw new DeadlineExceeded();
+        }
+
+        nodes.increment();
+        var newState = state.deepClone();
+        newState.debug = false;
+        newState.performAction(move, getActionCount(count));
+
+        var table = transpositionTable;
+        var key = TranspositionTable.key(newState.getHash(), count, depth);
+
+        if (table != null) {
+            var outcome = table.get(key);
+            if (outcome != null) return outcome;
+        }
+
+        double rating = 0;
+        double epidemics = 0;
+        double cards = 0;
+
+        var moves = new MoveBuffer(64);
+        newState.generateMoves(moves);
+
+        for (var outcome : traverseInParallel(newState, moves, count + 1, depth, cutoff, deadline)) {
+            rating += outcome.rating();
+            epidemics += outcome.epidemics();
+            cards += outcome.cards();
+        }
+
+        rating = rating / moves.size();
+        epidemics = epidemics / moves.size();
+        cards = cards / moves.size();
+
+        var outcome = new Outcome(null, epidemics, rating, cards);
+
+        if (table != null)
+            table.put(key, outcome);
+
+        return outcome;
+    }
+
+    /**
+     * Gets the action count within its turn of an action of the search.
+     * @param count the action count in the search (it keeps counting on into the following turns).
+     * @return the action count within the turn (1 - 4)
+     */
+    protected static int getActionCount(int count) {
+        return (count - 1) % 4 + 1;
+    }
+
+    /**
+     * Gets the work-stealing pool, creating it on first use.
+     * @return the pool
+     */
+    protected synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Recovers the checked exception a task failed with.
+     * @param e the exception rethrown by the pool.
+     * @return the original exception.
+     */
+    protected static Exception unwrap(RuntimeException e) {
+        Throwable cause = e;
+
+        while (cause != null) {
+            if (cause instanceof Exception exception && !(cause instanceof RuntimeException)) {
+                return exception;
+            }
+            cause = cause.getCause();
+        }
+
+        return e;
+    }
+
+    /**
+     * Task traversing the subtree under a single action. Tasks are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private class TraverseTask extends RecursiveTask<Outcome> {
+        // qualified because ForkJoinTask inherits Future.State
+        private final org.board.logic.State state;
+        private final long move;
+        private final int count;
+        private final int depth;
+        private final int cutoff;
+        private final long deadline;
+
+        TraverseTask(org.board.logic.State state, long move, int count, int depth, int cutoff, long deadline) {
+            this.state = state;
+            this.move = move;
+            this.count = count;
+            this.depth = depth;
+            this.cutoff = cutoff;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Outcome compute() {
+            try {
+                return traverseGameTreeInParallel(state, move, count, depth, cutoff, deadline);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Task used to enter the pool from outside it and run a batch of traversals.
+     */
+    @SuppressWarnings("serial")
+    private static class InvokeAllTask extends RecursiveTask<Void> {
+        private final ArrayList<TraverseTask> tasks;
+
+        InvokeAllTask(ArrayList<TraverseTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected Void compute() {
+            ForkJoinTask.invokeAll(tasks);
+            return null;
+        }
+    }
+
+    /**
+     * Thrown to abandon a search that ran past its deadline. It never leaves the agent, so it is never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class DeadlineExceeded extends RuntimeException {
+        DeadlineExceeded() {
+            super("Search deadline exceeded", null, false, false);
+        }
     }
 
     /**
@@ -147,7 +891,7 @@ public class Agent {
         System.out.println("\nConsulting agent " + getPlayer().getName());
 
         for (int actionCount = 1; actionCount <= 4; actionCount++) {
-            var outcomes = getRankedBestOptions(state);
+            var outcomes = getRankedBestOptions(state, actionCount, consultTimeBudget);
             var choice = IO.getPlayerPreferredOutcome(outcomes, player.getName(), getPlayer().getName(), actionCount);
             state.performAction(choice.option(), actionCount);
         }
@@ -159,30 +903,31 @@ public class Agent {
      * @param endState the end state
      * @return the rating of the action.
      */
-    private int rateState(State beginState, State endState) {
+    protected double rateState(Metrics beginState, Metrics endState) {
         // higher better - lower worse
+        var weights = this.weights;
 
         // get number of free cubes;
-        var cubesFreed = (endState.getFreeCubesCount() - beginState.getFreeCubesCount()) * CUBES_FREED_WEIGHT;
+        var cubesFreed = (endState.freeCubes() - beginState.freeCubes()) * weights.cubesFreed();
 
         // get infection rate difference
-        var infectionRate = (endState.getInfectionRateMarkerState() - beginState.getInfectionRateMarkerState()) * INFECTION_RATE_WEIGHT;
+        var infectionRate = (endState.infectionRate() - beginState.infectionRate()) * weights.infectionRate();
 
         // get cure indicator difference
-        var cure = (endState.getCureCount() - beginState.getCureCount()) * CURE_WEIGHT;
+        var cure = (endState.cures() - beginState.cures()) * weights.cure();
 
         // get epidemics difference
-        var epidemics = (endState.getEpidemics() - beginState.getEpidemics()) * EPIDEMICS_WEIGHT;
+        var epidemics = (endState.epidemics() - beginState.epidemics()) * weights.epidemics();
 
         // check if the game is over difference
-        var failed = endState.isFailed() ? GAME_OVER_WEIGHT : 0;
-        var winning = !endState.isRunning() && !endState.isFailed() ? WINNING_WEIGHT : 0;
+        var failed = endState.failed() ? weights.gameOver() : 0;
+        var winning = !endState.running() && !endState.failed() ? weights.winning() : 0;
 
         // check outbreak marker difference
-        var outbreaks = (endState.getOutbreakMarkerState() - beginState.getOutbreakMarkerState()) * OUTBREAK_WEIGHT;
+        var outbreaks = (endState.outbreaks() - beginState.outbreaks()) * weights.outbreaks();
 
         // research stations difference
-        var stations = (endState.getResearchStationsCount() - beginState.getResearchStationsCount()) * RESEARCH_STATION_WEIGHT;
+        var stations = (endState.stations() - beginState.stations()) * weights.researchStations();
 
         return cubesFreed + infectionRate + cure + epidemics + failed + outbreaks + stations + winning;
     }
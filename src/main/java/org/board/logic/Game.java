@@ -5,9 +5,23 @@ import org.board.utils.*;
 public class Game {
     State state = new State();
 
-    private final Agent agent = new Agent();
+    private final Agent agent;
 
-    public Game() throws Exception {}
+    public Game() throws Exception {
+        this(new Agent());
+    }
+
+    /**
+     * Creates a game played against the given agent.
+     * @param agent the agent
+     * @throws Exception when the game state errors.
+     */
+    public Game(Agent agent) throws Exception {
+        this.agent = agent;
+
+        // search the game tree on every available core
+        agent.setParallelism(Runtime.getRuntime().availableProcessors());
+    }
 
 
     /**
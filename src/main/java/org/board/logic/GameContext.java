@@ -0,0 +1,107 @@
+package org.board.logic;
+
+import org.board.entities.*;
+import org.board.utils.Loader;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Owns the pieces of a single game - players, cards, cubes and stations - so that several games can be loaded and
+ * played in the same process. The city graph only depends on the map file, so every context shares the same
+ * read-only graph.
+ */
+public class GameContext {
+    /* the map (shared by all the games, never modified once loaded) */
+    private final CityGraph graph;
+
+    /* the players of the game */
+    private final ArrayList<Player> players = new ArrayList<>();
+
+    /* the disease cubes of the game */
+    private final ArrayList<Cube> cubes = new ArrayList<>();
+
+    /* the research stations of the game */
+    private final ArrayList<Station> stations = new ArrayList<>();
+
+    /* the player deck */
+    private final ArrayList<PlayerCard> playerCards = new ArrayList<>();
+
+    /* the infection deck */
+    private final ArrayList<InfectionCard> infectionCards = new ArrayList<>();
+
+    /* seed of the games that aren't given one, so that they play out the same way on every run */
+    private static final long DEFAULT_SEED = 20;
+
+    /* draws the shuffles, roles and reshuffle seeds of the game */
+    private final SplittableRandom random;
+
+    /* number of seats played by agents without asking for players (0 asks the players through IO) */
+    private final int agentSeats;
+
+    /**
+     * Creates the context of a new game on the map, asking for the players through IO.
+     * @throws Exception when the map fails to load.
+     */
+    public GameContext() throws Exception {
+        this(DEFAULT_SEED, 0);
+    }
+
+    /**
+     * Creates the context of a new game on the map.
+     * @param seed the seed of the shuffles, roles and reshuffles of the game.
+     * @param agentSeats the number of seats played by agents (2 - 4), 0 asks for the players through IO.
+     * @throws Exception when the map fails to load.
+     */
+    public GameContext(long seed, int agentSeats) throws Exception {
+        this(Loader.loadCityGraph(), seed, agentSeats);
+    }
+
+    /**
+     * Creates the context of a new game on a given map.
+     * @param graph the map (see Loader.loadCityGraph).
+     * @param seed the seed of the shuffles, roles and reshuffles of the game.
+     * @param agentSeats the number of seats played by agents (2 - 4), 0 asks for the players through IO.
+     */
+    public GameContext(CityGraph graph, long seed, int agentSeats) {
+        this.graph = graph;
+        random = new SplittableRandom(seed);
+        this.agentSeats = agentSeats;
+    }
+
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    public int getAgentSeats() {
+        return agentSeats;
+    }
+
+    public CityGraph getGraph() {
+        return graph;
+    }
+
+    public ArrayList<City> getCities() {
+        return graph.getCities();
+    }
+
+    public ArrayList<Player> getPlayers() {
+        return players;
+    }
+
+    public ArrayList<Cube> getCubes() {
+        return cubes;
+    }
+
+    public ArrayList<Station> getStations() {
+        return stations;
+    }
+
+    public ArrayList<PlayerCard> getPlayerCards() {
+        return playerCards;
+    }
+
+    public ArrayList<InfectionCard> getInfectionCards() {
+        return infectionCards;
+    }
+}
@@ -0,0 +1,391 @@
+package org.board.logic;
+
+import org.board.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Agent that ranks options with a UCT Monte Carlo tree search instead of expanding every option at every level.
+ * The tree covers the same four actions as the exhaustive search and rates leaves with the same evaluation
+ * function, but the work done per decision is bounded by an iteration or time budget.
+ */
+public class MonteCarloAgent extends Agent {
+    /**
+     * How the search is spread over several threads.
+     */
+    public enum Mode {
+        /* each thread grows its own tree and the root statistics are merged at the end */
+        RootParallel,
+        /* all threads grow a single shared tree */
+        TreeParallel,
+    }
+
+    /* number of actions covered by the tree (matches the exhaustive search) */
+    private static final int HORIZON = 4;
+
+    /* rating subtracted from a node while a thread is exploring it, steering other threads elsewhere */
+    private static final double VIRTUAL_LOSS = 100;
+
+    /* maximum number of iterations per decision (0 means no limit) */
+    private int iterations = 2000;
+
+    /* maximum time spent per decision in milliseconds (0 means no limit) */
+    private long timeBudget = 0;
+
+    /* the exploration constant of the UCB1 formula (in rating units) */
+    private double exploration = 50;
+
+    /* how the search uses several threads */
+    private Mode mode = Mode.RootParallel;
+
+    /* seed for the rollouts */
+    private long seed = 1;
+
+    /**
+     * Sets the maximum number of iterations per decision.
+     * @param iterations the iteration budget (0 means no limit)
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Sets the maximum time spent per decision.
+     * @param timeBudget the time budget in milliseconds (0 means no limit)
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Sets the exploration constant of the UCB1 formula.
+     * @param exploration the constant (in rating units)
+     */
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    }
+
+    /**
+     * Sets how the search uses several threads.
+     * @param mode the parallel mode
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Sets the seed for the rollouts.
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets a list of all the outcomes ranked by their average rating in the search tree.
+     * @param state the state of the game.
+     * @param count the action count within the turn (1 - 4).
+     * @param timeBudget the time budget in milliseconds on top of the agent's own budgets (0 means no limit).
+     * @return a list of outcomes
+     * @throws Exception when the game state encounters an error state.
+     */
+    @Override
+    public ArrayList<Outcome> getRankedBestOptions(State state, int count, long timeBudget) throws Exception {
+        var options = state.getAllPossibleActions();
+        var threads = getParallelism();
+
+        // every root option gets at least one iteration so that it can be rated.
+        var budget = iterations > 0 ? Math.max(iterations, options.size()) : Integer.MAX_VALUE;
+
+        // the tighter of the two time budgets applies.
+        if (this.timeBudget > 0 && (timeBudget <= 0 || this.timeBudget < timeBudget)) {
+            timeBudget = this.timeBudget;
+        }
+
+        var deadline = timeBudget > 0 ? System.currentTimeMillis() + timeBudget : Long.MAX_VALUE;
+
+        var root = new Node(-1);
+        // a generator for each thread, split from the seed so that the threads don't share a stream.
+        var streams = Utils.split(seed, threads);
+
+        if (threads <= 1) {
+            search(root, state, count, budget, deadline, streams[0]);
+        } else if (mode == Mode.TreeParallel) {
+            runOnThreads(threads, thread -> {
+                search(root, state, count, share(budget, threads, thread), deadline, streams[thread]);
+                return root;
+            });
+        } else {
+            for (var tree : runOnThreads(threads, thread -> {
+                var tree = new Node(-1);
+                search(tree, state, count, share(budget, threads, thread), deadline, streams[thread]);
+                return tree;
+            })) {
+                root.merge(tree);
+            }
+        }
+
+        var ranking = new ArrayList<Outcome>();
+
+        for (int i = 0; i < options.size(); i++) {
+            var child = root.children == null ? null : root.children[i];
+
+            if (child == null || child.visits == 0) {
+                ranking.add(new Outcome(options.get(i), 0, -Double.MAX_VALUE, 0));
+                continue;
+            }
+
+            ranking.add(new Outcome(options.get(i), child.epidemics / child.visits, child.rating / child.visits, child.cards / child.visits));
+        }
+
+        ranking.sort(Comparator.comparingDouble(o -> -o.rating()));
+
+        return ranking;
+    }
+
+    /**
+     * Splits the iteration budget between threads.
+     * @param budget the total budget
+     * @param threads the number of threads
+     * @param thread the index of the thread
+     * @return the iterations for the thread
+     */
+    private static int share(int budget, int threads, int thread) {
+        if (budget == Integer.MAX_VALUE) return budget;
+        return budget / threads + (thread < budget % threads ? 1 : 0);
+    }
+
+    /**
+     * Work run by a search thread.
+     */
+    private interface Worker {
+        Node run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs a worker on each thread of the pool and waits for all of them.
+     * @param threads the number of workers
+     * @param worker the work of a thread
+     * @return the tree returned by each worker
+     * @throws Exception when a worker fails.
+     */
+    private ArrayList<Node> runOnThreads(int threads, Worker worker) throws Exception {
+        var pool = getPool();
+        var futures = new ArrayList<Future<Node>>();
+
+        for (int thread = 0; thread < threads; thread++) {
+            var index = thread;
+            futures.add(pool.submit((Callable<Node>) () -> worker.run(index)));
+        }
+
+        var trees = new ArrayList<Node>();
+
+        for (var future : futures) {
+            try {
+                trees.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) throw cause;
+                throw e;
+            }
+        }
+
+        return trees;
+    }
+
+    /**
+     * Grows the tree until the budget runs out.
+     * @param root the root of the tree
+     * @param state the state at the root
+     * @param count the action count at the root
+     * @param budget the number of iterations
+     * @param deadline the time to stop at
+     * @param random the generator for the rollouts
+     * @throws Exception when the state fails.
+     */
+    private void search(Node root, State state, int count, int budget, long deadline, SplittableRandom random) throws Exception {
+        // every iteration plays on the same copy and undoes its actions afterwards.
+        var searchState = prepareSearchState(state);
+        var moves = new MoveBuffer();
+
+        for (int i = 0; i < budget; i++) {
+            // checking the clock every few iterations keeps the overhead low.
+            if (i > 0 && (i & 15) == 0 && System.currentTimeMillis() >= deadline) break;
+            iterate(root, searchState, moves, count, random);
+        }
+    }
+
+    /**
+     * Runs a single iteration: selection, expansion, rollout and back propagation.
+     * @param root the root of the tree
+     * @param state the state at the root (recording its actions), left as it was
+     * @param moves the buffer the moves are generated into
+     * @param first the action count at the root
+     * @param random the generator for the rollouts
+     * @throws Exception when the state fails.
+     */
+    private void iterate(Node root, State state, MoveBuffer moves, int first, SplittableRandom random) throws Exception {
+        var path = new ArrayList<Node>();
+        var node = root;
+
+        root.addVirtualLoss();
+        path.add(root);
+        Metrics parent = null;
+
+        for (int count = 1; count <= HORIZON; count++) {
+            moves.clear();
+            state.generateMoves(moves);
+
+            // keeping the state before the last action for the evaluation function.
+            if (count == HORIZON) parent = Metrics.of(state);
+
+            long move;
+
+            if (node != null) {
+                var child = node.select(moves.size(), exploration, random);
+                path.add(child);
+                move = moves.get(child.index);
+
+                // stepping out of the tree once a new node has been added.
+                node = child.visits == 0 ? null : child;
+            } else {
+                move = moves.get(random.nextInt(moves.size()));
+            }
+
+            state.performAction(move, getActionCount(first + count - 1));
+            nodes.increment();
+        }
+
+        var leaf = Metrics.of(state);
+        var rating = rateState(parent, leaf);
+        var epidemics = leaf.epidemics() - parent.epidemics();
+        var cards = state.getPlayers().get(parent.turn()).getHandSize();
+
+        for (int count = 1; count <= HORIZON; count++) {
+            state.undo();
+        }
+
+        for (var visited : path) {
+            visited.update(rating, epidemics, cards);
+        }
+    }
+
+    /**
+     * A node in the search tree, representing the state reached after an option.
+     */
+    private static class Node {
+        /* the index of the option in the parent's options */
+        final int index;
+
+        /* the children of the node, one per option (null until expanded) */
+        Node[] children;
+
+        /* statistics of the rollouts through the node */
+        int visits;
+        double rating;
+        double epidemics;
+        double cards;
+
+        /* threads currently exploring the node */
+        int virtualLosses;
+
+        Node(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Picks the child to explore with the UCB1 formula, expanding the node on its first visit.
+         * @param optionCount the number of options available at the node
+         * @param exploration the exploration constant
+         * @param random the generator used to break ties between unvisited children
+         * @return the selected child
+         */
+        synchronized Node select(int optionCount, double exploration, SplittableRandom random) {
+            if (children == null) {
+                children = new Node[optionCount];
+            }
+
+            Node best = null;
+            var bestScore = Double.NEGATIVE_INFINITY;
+            var total = visits + virtualLosses;
+
+            // unvisited children are explored first (starting at a random one).
+            var offset = random.nextInt(children.length);
+
+            for (int i = 0; i < children.length; i++) {
+                var index = (i + offset) % children.length;
+                var child = children[index];
+
+                if (child == null) {
+                    child = new Node(index);
+                    children[index] = child;
+                }
+
+                double score;
+                var childVisits = child.visits + child.virtualLosses;
+
+                if (childVisits == 0) {
+                    score = Double.POSITIVE_INFINITY;
+                } else {
+                    var mean = (child.rating - child.virtualLosses * VIRTUAL_LOSS) / childVisits;
+                    score = mean + exploration * Math.sqrt(Math.log(total) / childVisits);
+                }
+
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = child;
+                }
+            }
+
+            best.addVirtualLoss();
+            return best;
+        }
+
+        synchronized void addVirtualLoss() {
+            virtualLosses += 1;
+        }
+
+        /**
+         * Records the result of a rollout through the node.
+         */
+        synchronized void update(double rating, double epidemics, double cards) {
+            virtualLosses -= 1;
+            visits += 1;
+            this.rating += rating;
+            this.epidemics += epidemics;
+            this.cards += cards;
+        }
+
+        /**
+         * Adds the root statistics of another tree to this one.
+         * @param tree a tree searched from the same state
+         */
+        void merge(Node tree) {
+            if (tree.children == null) return;
+
+            if (children == null) {
+                children = new Node[tree.children.length];
+            }
+
+            for (int i = 0; i < children.length; i++) {
+                var child = tree.children[i];
+                if (child == null) continue;
+
+                if (children[i] == null) {
+                    children[i] = new Node(i);
+                }
+
+                children[i].visits += child.visits;
+                children[i].rating += child.rating;
+                children[i].epidemics += child.epidemics;
+                children[i].cards += child.cards;
+            }
+
+            visits += tree.visits;
+        }
+    }
+}
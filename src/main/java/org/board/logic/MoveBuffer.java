@@ -0,0 +1,105 @@
+package org.board.logic;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, growable list of packed moves. The search generates the moves of each node on top of the moves of its
+ * ancestors and truncates the buffer back once the node is searched, so a single buffer serves a whole search.
+ */
+public class MoveBuffer {
+    /* the packed moves */
+    private long[] moves;
+
+    /* number of moves in the buffer */
+    private int size = 0;
+
+    public MoveBuffer() {
+        this(256);
+    }
+
+    /**
+     * Creates a buffer.
+     * @param capacity the initial number of moves the buffer can hold
+     */
+    public MoveBuffer(int capacity) {
+        moves = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds a move at the end of the buffer.
+     * @param move the packed move
+     */
+    public void add(long move) {
+        ensureCapacity(size + 1);
+        moves[size++] = move;
+    }
+
+    /**
+     * Adds a range of moves at the end of the buffer.
+     * @param moves the packed moves
+     * @param from the index of the first move to add
+     * @param to the index after the last move to add
+     */
+    public void addAll(long[] moves, int from, int to) {
+        ensureCapacity(size + to - from);
+        System.arraycopy(moves, from, this.moves, size, to - from);
+        size += to - from;
+    }
+
+    /**
+     * Adds a range of moves at the end of the buffer, or'ing the same bits into each of them.
+     * @param moves the packed moves
+     * @param from the index of the first move to add
+     * @param to the index after the last move to add
+     * @param bits the bits to add to each move (see Move.card)
+     */
+    public void addAll(long[] moves, int from, int to, long bits) {
+        ensureCapacity(size + to - from);
+
+        for (var i = from; i < to; i++) {
+            this.moves[size++] = moves[i] | bits;
+        }
+    }
+
+    /**
+     * Grows the buffer so that it can hold a number of moves.
+     * @param capacity the number of moves
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(capacity, moves.length * 2));
+        }
+    }
+
+    /**
+     * Gets a move.
+     * @param index the position of the move
+     * @return the packed move
+     */
+    public long get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Gets the number of moves in the buffer.
+     * @return the move count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Drops the moves after a position.
+     * @param size the number of moves to keep
+     */
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Drops all the moves.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
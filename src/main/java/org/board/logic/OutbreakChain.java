@@ -0,0 +1,90 @@
+package org.board.logic;
+
+import java.util.Arrays;
+
+/**
+ * The worklist of an outbreak chain reaction: the cities that broke out in the chain, a bit per city, and the queue of
+ * the outbreaks still to resolve. A city breaks out at most once in a chain, so a chain resolves in time bounded by
+ * the number of cities instead of recursing through neighbours that keep breaking out.
+ * <p>
+ * Each thread reuses a single chain, so resolving outbreaks doesn't allocate once the chain has grown to the map
+ * (chains don't nest, the cubes placed by a chain never start another one). Starting a chain only clears the bits of
+ * the cities of the previous chain.
+ */
+final class OutbreakChain {
+    /* the chain of each thread */
+    private static final ThreadLocal<OutbreakChain> CHAINS = ThreadLocal.withInitial(OutbreakChain::new);
+
+    /* the cities that broke out in the chain, in order - the ones from head on are still to resolve */
+    private int[] queue = new int[64];
+    private int head = 0;
+    private int tail = 0;
+
+    /* the cities that broke out in the chain, a bit per city */
+    private long[] visited = new long[1];
+
+    private OutbreakChain() {
+    }
+
+    /**
+     * Starts a chain on the current thread.
+     * @param city the city breaking out first.
+     * @param cityCount the number of cities of the map.
+     * @return the chain
+     */
+    static OutbreakChain start(int city, int cityCount) {
+        var chain = CHAINS.get();
+        chain.clear(cityCount);
+        chain.visit(city);
+
+        return chain;
+    }
+
+    /**
+     * Checks if a city broke out in the chain.
+     * @param city the city
+     * @return true when the city broke out
+     */
+    boolean hasVisited(int city) {
+        return (visited[city >>> 6] & 1L << city) != 0;
+    }
+
+    /**
+     * Adds the outbreak of a city to the chain, unless the city already broke out in it.
+     * @param city the city
+     */
+    void visit(int city) {
+        if (hasVisited(city)) return;
+
+        visited[city >>> 6] |= 1L << city;
+        queue[tail++] = city;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Takes the next outbreak to resolve.
+     * @return the city breaking out
+     */
+    int next() {
+        return queue[head++];
+    }
+
+    /**
+     * Clears the previous chain and sizes the chain for the map.
+     * @param cityCount the number of cities of the map.
+     */
+    private void clear(int cityCount) {
+        for (var i = 0; i < tail; i++) {
+            visited[queue[i] >>> 6] &= ~(1L << queue[i]);
+        }
+
+        head = 0;
+        tail = 0;
+
+        if (queue.length < cityCount) queue = new int[cityCount];
+        if (visited.length < (cityCount + 63) >>> 6) visited = Arrays.copyOf(visited, (cityCount + 63) >>> 6);
+    }
+}
@@ -0,0 +1,767 @@
+package org.board.logic;
+
+import org.board.entities.CityGraph;
+import org.board.entities.Move;
+import org.board.enumerables.Colour;
+import org.board.enumerables.OptionType;
+import org.board.utils.Utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A compact, immutable copy of the game state for the search. Cubes are stored as 2-bit counts, stations, hands
+ * and colours as bitsets over the cities and decks as arrays of cities, so copying a state only copies a few small
+ * arrays. Performing an action returns a new state and leaves the original untouched.
+ * <p>
+ * It follows the rules of State and generates the same moves in the same order, cards being identified by their
+ * city (see Move). Like State, a cure disposes the five cards of the colour with the lowest cities.
+ */
+public final class SearchState {
+    /* marks the epidemic cards in the player deck */
+    static final int EPIDEMIC = -1;
+
+    /* number of disease colours (the Colour enum has an extra invalid colour at 0) */
+    static final int DISEASES = 4;
+
+    /* bits used by the count of cubes of a colour in a city */
+    private static final int CUBE_BITS = 2;
+
+    /* bits used by the cube counts of a city */
+    private static final int CITY_BITS = CUBE_BITS * DISEASES;
+
+    /**
+     * The parts of a game that don't change during it - the map, the cube supply and the hash keys. A layout is
+     * shared by all the search states of a game.
+     */
+    static final class Layout {
+        /* number of cities on the map */
+        final int cityCount;
+
+        /* longs needed for a bitset over the cities */
+        final int cityWords;
+
+        /* colour of each city (ordinal) */
+        final byte[] colours;
+
+        /* neighbours of each city, in compressed sparse rows (see CityGraph) */
+        final int[] offsets;
+        final int[] adjacency;
+
+        /* packed moves along each route, in the order of adjacency, and to each city (see CityGraph) */
+        final long[] ferryMoves;
+        final long[] charterMoves;
+
+        /* the cities of each colour, as a bitset [colour][word] */
+        final long[][] colourMasks;
+
+        /* cubes of each colour in the game (ordinal) */
+        final int[] cubeSupply;
+
+        /* number of players */
+        final int playerCount;
+
+        /* hash keys of the map */
+        final Zobrist zobrist;
+
+        Layout(byte[] colours, CityGraph graph, int[] cubeSupply, int playerCount, Zobrist zobrist) {
+            this.cityCount = colours.length;
+            this.cityWords = (cityCount + 63) >>> 6;
+            this.colours = colours;
+            this.offsets = graph.getOffsets();
+            this.adjacency = graph.getAdjacency();
+            this.ferryMoves = graph.getFerryMoves();
+            this.charterMoves = graph.getCharterMoves();
+            this.cubeSupply = cubeSupply;
+            this.playerCount = playerCount;
+            this.zobrist = zobrist;
+
+            colourMasks = new long[DISEASES + 1][cityWords];
+
+            for (var city = 0; city < cityCount; city++) {
+                colourMasks[colours[city]][city >>> 6] |= 1L << city;
+            }
+        }
+    }
+
+    /* the map and the other data shared by the states of a game */
+    final Layout layout;
+
+    /* cubes of each colour in each city, 2 bits per colour and 8 bits per city */
+    long[] cubes;
+
+    /* cubes of each colour on the board (ordinal) */
+    int[] boardCubes;
+
+    /* cities with a research station, a bit per city */
+    long[] stationMask;
+
+    /* the city of each station in the game, -1 when the station isn't on the board */
+    int[] stations;
+    int stationCount;
+
+    /* the city of each player */
+    int[] pawns;
+
+    /* the cards in each player's hand, a bit per city [player * city words + word] */
+    long[] hands;
+    byte[] handSizes;
+
+    /* the player deck (cities or EPIDEMIC) and its marker - the deck never changes order so it is always shared */
+    int[] playerDeck;
+    int playerDeckIndex;
+
+    /* the infection deck (cities) and its marker - shared until a reshuffle copies it */
+    int[] infectionDeck;
+    int infectionDeckIndex;
+
+    /* cure indicator of each disease (0 - inactive, 1 - cured, 2 - eradicated) */
+    byte[] cures;
+
+    /* markers and the current player */
+    int outbreaks;
+    int infectionRate;
+    int epidemics;
+    int turn;
+
+    /* end states */
+    boolean running;
+    boolean failed;
+    String status;
+
+    /* seeds the infection deck reshuffles and identifies the deck order (see State) */
+    long shuffleSeed;
+    long deckKey;
+
+    /* Zobrist hash, equal to the hash of the matching State */
+    long hash;
+
+    /**
+     * Creates an empty state, filled by State.toSearchState.
+     * @param layout the data shared by the states of the game
+     */
+    SearchState(Layout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Copies a state. The player deck is shared, and so is the infection deck until it is reshuffled.
+     * @param state the state to copy
+     */
+    private SearchState(SearchState state) {
+        layout = state.layout;
+        cubes = state.cubes.clone();
+        boardCubes = state.boardCubes.clone();
+        stationMask = state.stationMask.clone();
+        stations = state.stations.clone();
+        stationCount = state.stationCount;
+        pawns = state.pawns.clone();
+        hands = state.hands.clone();
+        handSizes = state.handSizes.clone();
+        playerDeck = state.playerDeck;
+        playerDeckIndex = state.playerDeckIndex;
+        infectionDeck = state.infectionDeck;
+        infectionDeckIndex = state.infectionDeckIndex;
+        cures = state.cures.clone();
+        outbreaks = state.outbreaks;
+        infectionRate = state.infectionRate;
+        epidemics = state.epidemics;
+        turn = state.turn;
+        running = state.running;
+        failed = state.failed;
+        status = state.status;
+        shuffleSeed = state.shuffleSeed;
+        deckKey = state.deckKey;
+        hash = state.hash;
+    }
+
+    /**
+     * Converts a game state.
+     * @param state the state
+     * @return the search state
+     */
+    public static SearchState of(State state) {
+        return state.toSearchState();
+    }
+
+    /**
+     * Converts the state back to a game state.
+     * @param template the game state this state (or one of its ancestors) was converted from, which provides the
+     *                 players, cards, cubes and stations.
+     * @return a new game state
+     * @throws Exception when the state can't be placed on the board of the template.
+     */
+    public State toState(State template) throws Exception {
+        return template.fromSearchState(this);
+    }
+
+    /* Getters */
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public int getOutbreakMarkerState() {
+        return outbreaks;
+    }
+
+    public int getInfectionRateMarkerState() {
+        return infectionRate;
+    }
+
+    public int getEpidemics() {
+        return epidemics;
+    }
+
+    public int getResearchStationsCount() {
+        return stationCount;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the number of diseases with a cure (cured or eradicated).
+     * @return the cure count
+     */
+    public int getCureCount() {
+        var count = 0;
+
+        for (var cure : cures) {
+            if (cure != 0) count += 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the number of cubes on the board (see State.getFreeCubesCount).
+     * @return the cube count
+     */
+    public int getFreeCubesCount() {
+        var count = 0;
+
+        for (var colourCount : boardCubes) {
+            count += colourCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the number of cards in a player's hand.
+     * @param player the player
+     * @return the card count
+     */
+    public int getHandSize(int player) {
+        return handSizes[player];
+    }
+
+    /**
+     * Gets the city of a player.
+     * @param player the player
+     * @return the city
+     */
+    public int getPawnCity(int player) {
+        return pawns[player];
+    }
+
+    /**
+     * Counts the cubes of a colour in a city.
+     * @param city the city
+     * @param colour the colour (ordinal)
+     * @return the cube count
+     */
+    public int getCubes(int city, int colour) {
+        var bit = city * CITY_BITS + (colour - 1) * CUBE_BITS;
+        return (int) (cubes[bit >>> 6] >>> bit) & 3;
+    }
+
+    /**
+     * Checks if there is a research station in a city.
+     * @param city the city
+     * @return true if the city has a station
+     */
+    public boolean hasStation(int city) {
+        return (stationMask[city >>> 6] & (1L << city)) != 0;
+    }
+
+    /**
+     * Checks if a player holds the card of a city.
+     * @param player the player
+     * @param city the city of the card
+     * @return true if the card is in the player's hand
+     */
+    public boolean hasCard(int player, int city) {
+        return (hands[player * layout.cityWords + (city >>> 6)] & (1L << city)) != 0;
+    }
+
+    /* Generating Moves */
+
+    /**
+     * Generates all the possible actions of the current player as packed moves, in the order of State.generateMoves
+     * with the cards of the hand taken in the order of their cities.
+     * @param moves the buffer the moves are added to.
+     */
+    public void generateMoves(MoveBuffer moves) {
+        var city = pawns[turn];
+
+        // treating the diseases in the city (the cure is checked with the city colour, as State does).
+        var type = cures[layout.colours[city] - 1] == 1 ? OptionType.TreatDiseaseRemoveAll : OptionType.TreatDiseaseRemoveOneCube;
+
+        for (var colour = 1; colour <= DISEASES; colour++) {
+            if (getCubes(city, colour) == 0) continue;
+            moves.add(Move.of(type, -1, -1, -1, colour));
+        }
+
+        moves.addAll(layout.ferryMoves, layout.offsets[city], layout.offsets[city + 1]);
+
+        // moves disposing each card of the hand.
+        var words = layout.cityWords;
+
+        for (var word = 0; word < words; word++) {
+            var bits = hands[turn * words + word];
+
+            while (bits != 0) {
+                var card = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                if (card == city) {
+                    moves.addAll(layout.charterMoves, 0, city, Move.card(card));
+                    moves.addAll(layout.charterMoves, city + 1, layout.cityCount, Move.card(card));
+                    if (stationCount < stations.length)
+                        moves.add(Move.of(OptionType.BuildResearchStation, card, -1, -1, -1));
+                } else {
+                    moves.add(Move.of(OptionType.DirectFlight, card, card, -1, -1));
+                }
+
+                for (var player = 0; player < layout.playerCount; player++) {
+                    if (player == turn) continue;
+                    moves.add(Move.of(OptionType.TransferCard, card, -1, player, -1));
+                }
+            }
+        }
+
+        if (!hasStation(city)) return;
+
+        if (handSizes[turn] >= 5) {
+            for (var colour = 1; colour <= DISEASES; colour++) {
+                if (countCards(turn, colour) < 5 || cures[colour - 1] == 1) continue;
+                moves.add(Move.of(OptionType.DiscoverACure, -1, -1, -1, colour));
+            }
+        }
+
+        for (var station : stations) {
+            if (station == city || station == -1) continue;
+            moves.add(Move.of(OptionType.ShuttleFlight, -1, station, -1, -1));
+        }
+    }
+
+    /**
+     * Counts the cards of a colour in a player's hand.
+     * @param player the player
+     * @param colour the colour (ordinal)
+     * @return the card count
+     */
+    private int countCards(int player, int colour) {
+        var words = layout.cityWords;
+        var mask = layout.colourMasks[colour];
+        var count = 0;
+
+        for (var word = 0; word < words; word++) {
+            count += Long.bitCount(hands[player * words + word] & mask[word]);
+        }
+
+        return count;
+    }
+
+    /* Performing Actions */
+
+    /**
+     * Performs a packed move generated by generateMoves on a copy of the state, and deals the cards if it is the
+     * last action of the turn.
+     * @param move the packed move.
+     * @param actionCount the action count within the turn (1 - 4).
+     * @return the state after the action.
+     * @throws Exception when the game state errors.
+     */
+    public SearchState performAction(long move, int actionCount) throws Exception {
+        var state = new SearchState(this);
+        state.performMove(move, actionCount);
+        return state;
+    }
+
+    /**
+     * Performs a packed move in place (see performAction).
+     * @param move the packed move.
+     * @param actionCount the action count within the turn (1 - 4).
+     * @throws Exception when the game state errors.
+     */
+    private void performMove(long move, int actionCount) throws Exception {
+        if (!running) return;
+
+        var card = Move.getCard(move);
+        var endCity = Move.getEndCity(move);
+        var suit = Move.getSuit(move);
+
+        switch (Move.getType(move)) {
+            case TransferCard -> {
+                removeCard(turn, card);
+                addCard(Move.getEndPlayer(move), card);
+            }
+            case DriveOrFerry, ShuttleFlight -> placePawn(turn, endCity);
+            case DirectFlight -> {
+                removeCard(turn, card);
+
+                if (card != endCity) {
+                    setGameOver("Can't direct fly with card " + card + " to city " + endCity);
+                } else {
+                    placePawn(turn, endCity);
+                }
+            }
+            case CharterFlight -> {
+                removeCard(turn, card);
+
+                if (card != pawns[turn]) {
+                    setGameOver("Can't charter flight to city " + pawns[turn] + " with card #" + card);
+                } else {
+                    placePawn(turn, endCity);
+                }
+            }
+            case BuildResearchStation -> {
+                removeCard(turn, card);
+
+                if (card != pawns[turn]) {
+                    setGameOver("Player city #" + pawns[turn] + " doesn't match card city #" + card);
+                } else {
+                    placeStation(pawns[turn]);
+                }
+            }
+            case TreatDiseaseRemoveOneCube -> {
+                var count = getCubes(pawns[turn], suit);
+                if (count > 0) setCubes(pawns[turn], suit, count - 1);
+                resolveEradication(suit);
+            }
+            case TreatDiseaseRemoveAll -> {
+                setCubes(pawns[turn], suit, 0);
+                resolveEradication(suit);
+            }
+            case DiscoverACure -> discoverCure(suit);
+            default -> setGameOver("Invalid player action choice " + Move.getType(move));
+        }
+
+        // all the diseases have a cure.
+        if (getCureCount() == DISEASES) {
+            running = false;
+        }
+
+        if (!running || actionCount != 4) return;
+
+        dealPlayerCards(2);
+        dealInfectionCardsForTurn();
+
+        var next = (turn + 1) % layout.playerCount;
+        hash ^= layout.zobrist.turn(turn) ^ layout.zobrist.turn(next);
+        turn = next;
+    }
+
+    /**
+     * Disposes the five cards of a colour with the lowest cities and cures the disease.
+     * @param suit the colour (ordinal)
+     * @throws Exception when the player doesn't have five cards of the colour.
+     */
+    private void discoverCure(int suit) throws Exception {
+        var words = layout.cityWords;
+        var mask = layout.colourMasks[suit];
+        var count = 0;
+
+        for (var word = 0; word < words && count < 5; word++) {
+            var bits = hands[turn * words + word] & mask[word];
+
+            while (bits != 0 && count < 5) {
+                removeCard(turn, (word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+                count += 1;
+            }
+        }
+
+        if (count != 5) {
+            throw new Exception("Couldn't get 5 cards of suit " + suit + ", got " + count);
+        }
+
+        setCure(suit - 1, 1);
+    }
+
+    /**
+     * Marks a disease as eradicated if it has a cure and no cube left on the board.
+     * @param suit the colour (ordinal)
+     */
+    private void resolveEradication(int suit) {
+        if (cures[suit - 1] == 0 || boardCubes[suit] != 0) return;
+        setCure(suit - 1, 2);
+    }
+
+    /**
+     * Deals cards from the player deck to the current player, resolving the epidemics.
+     * @param dealCount the number of cards.
+     * @throws Exception when the game state errors.
+     */
+    private void dealPlayerCards(int dealCount) throws Exception {
+        for (var i = 0; i < dealCount; i++) {
+            if (playerDeckIndex >= playerDeck.length) {
+                setGameOver("Ran out of player cards");
+                return;
+            }
+
+            var card = playerDeck[playerDeckIndex];
+            setPlayerDeckIndex(playerDeckIndex + 1);
+
+            if (card != EPIDEMIC) {
+                addCard(turn, card);
+                continue;
+            }
+
+            resolveEpidemic();
+
+            if (!running) return;
+        }
+    }
+
+    /**
+     * Resolves an epidemic: infects a city with three cubes and reshuffles the drawn infection cards back on top.
+     * @throws Exception when the game state errors.
+     */
+    private void resolveEpidemic() throws Exception {
+        hash ^= layout.zobrist.epidemics(epidemics) ^ layout.zobrist.epidemics(epidemics + 1);
+        hash ^= layout.zobrist.infectionRate(infectionRate) ^ layout.zobrist.infectionRate(infectionRate + 1);
+        epidemics += 1;
+        infectionRate += 1;
+
+        dealInfectionCard(3, true);
+
+        if (!running) return;
+
+        // copying the deck on write, the same way State reshuffles it.
+        infectionDeck = infectionDeck.clone();
+        Utils.shuffle(infectionDeck, 0, infectionDeckIndex, new SplittableRandom(shuffleSeed + epidemics));
+
+        setInfectionDeckIndex(0);
+    }
+
+    /**
+     * Deals the infection cards at the end of a turn.
+     * @throws Exception when the game state errors.
+     */
+    private void dealInfectionCardsForTurn() throws Exception {
+        var count = infectionRate > 3 ? 3 : 2;
+
+        for (var i = 0; i < count; i++) {
+            dealInfectionCard(1, false);
+            if (!running) return;
+        }
+    }
+
+    /**
+     * Deals an infection card and infects its city.
+     * @param n the number of cubes to place.
+     * @param skipCured true to skip the cities of cured diseases.
+     * @throws Exception when the game state errors.
+     */
+    private void dealInfectionCard(int n, boolean skipCured) throws Exception {
+        if (infectionDeckIndex >= infectionDeck.length) {
+            setGameOver("Ran out of infection cards");
+            return;
+        }
+
+        var city = infectionDeck[infectionDeckIndex];
+        setInfectionDeckIndex(infectionDeckIndex + 1);
+
+        var suit = layout.colours[city];
+
+        if (skipCured && cures[suit - 1] >= 1) return;
+
+        placeCubes(city, suit, n);
+    }
+
+    /**
+     * Places cubes of a colour in a city up to n cubes, resolving the outbreak when the city overflows.
+     * @param city the city
+     * @param suit the colour (ordinal)
+     * @param n the number of cubes
+     */
+    private void placeCubes(int city, int suit, int n) {
+        if (addCubes(city, suit, n)) {
+            resolveOutbreak(city, suit);
+        }
+    }
+
+    /**
+     * Places cubes of a colour in a city up to n cubes, without resolving the outbreak.
+     * @param city the city
+     * @param suit the colour (ordinal)
+     * @param n the number of cubes
+     * @return true when the city overflows and breaks out.
+     */
+    private boolean addCubes(int city, int suit, int n) {
+        var existing = getCubes(city, suit);
+
+        for (var i = existing; i < n; i++) {
+            if (boardCubes[suit] >= layout.cubeSupply[suit]) {
+                setGameOver("Out of cubes of the colour " + Colour.values()[suit]);
+                return false;
+            }
+
+            setCubes(city, suit, i + 1);
+        }
+
+        return existing + n > 3;
+    }
+
+    /**
+     * Resolves an outbreak and its chain reaction, placing a cube in each neighbour of the cities breaking out that
+     * didn't break out in the chain yet (see OutbreakChain).
+     * @param origin the city
+     * @param suit the colour (ordinal)
+     */
+    private void resolveOutbreak(int origin, int suit) {
+        var chain = OutbreakChain.start(origin, layout.cityCount);
+
+        while (!chain.isEmpty()) {
+            var city = chain.next();
+
+            hash ^= layout.zobrist.outbreaks(outbreaks) ^ layout.zobrist.outbreaks(outbreaks + 1);
+            outbreaks += 1;
+
+            if (outbreaks >= 8) {
+                setGameOver("Exceeded maximum numbers of outbreaks allowed.");
+                return;
+            }
+
+            for (var i = layout.offsets[city]; i < layout.offsets[city + 1]; i++) {
+                var neighbour = layout.adjacency[i];
+                if (chain.hasVisited(neighbour)) continue;
+
+                if (addCubes(neighbour, suit, 1)) {
+                    chain.visit(neighbour);
+                }
+
+                if (!running) return;
+            }
+        }
+    }
+
+    /* Setters */
+
+    private void setGameOver(String status) {
+        this.status = status;
+        running = false;
+        failed = true;
+    }
+
+    /**
+     * Sets the number of cubes of a colour in a city.
+     * @param city the city
+     * @param colour the colour (ordinal)
+     * @param count the cube count (0 - 3)
+     */
+    private void setCubes(int city, int colour, int count) {
+        var bit = city * CITY_BITS + (colour - 1) * CUBE_BITS;
+        var previous = (int) (cubes[bit >>> 6] >>> bit) & 3;
+
+        cubes[bit >>> 6] = (cubes[bit >>> 6] & ~(3L << bit)) | ((long) count << bit);
+        boardCubes[colour] += count - previous;
+        hash ^= layout.zobrist.cubes(city, colour, previous) ^ layout.zobrist.cubes(city, colour, count);
+    }
+
+    private void placePawn(int player, int city) {
+        hash ^= layout.zobrist.pawn(player, pawns[player]) ^ layout.zobrist.pawn(player, city);
+        pawns[player] = city;
+    }
+
+    /**
+     * Places a research station in the first station off the board.
+     * @param city the city
+     * @throws Exception when all the stations are on the board.
+     */
+    private void placeStation(int city) throws Exception {
+        var slot = 0;
+        while (slot < stations.length && stations[slot] != -1) slot++;
+
+        if (slot == stations.length) {
+            throw new Exception("All the research stations are already on the board.");
+        }
+
+        stations[slot] = city;
+        stationMask[city >>> 6] |= 1L << city;
+        stationCount += 1;
+        hash ^= layout.zobrist.station(city);
+    }
+
+    private void addCard(int player, int city) {
+        hands[player * layout.cityWords + (city >>> 6)] |= 1L << city;
+        handSizes[player] += 1;
+        hash ^= layout.zobrist.card(player, city);
+    }
+
+    /**
+     * Removes a card from a player's hand.
+     * @param player the player
+     * @param city the city of the card
+     * @throws Exception when the player doesn't hold the card.
+     */
+    private void removeCard(int player, int city) throws Exception {
+        if (city < 0 || !hasCard(player, city)) {
+            throw new Exception("Player " + player + " doesn't hold the card of city #" + city);
+        }
+
+        hands[player * layout.cityWords + (city >>> 6)] &= ~(1L << city);
+        handSizes[player] -= 1;
+        hash ^= layout.zobrist.card(player, city);
+    }
+
+    private void setCure(int disease, int value) {
+        hash ^= layout.zobrist.cure(disease, cures[disease]) ^ layout.zobrist.cure(disease, value);
+        cures[disease] = (byte) value;
+    }
+
+    private void setPlayerDeckIndex(int index) {
+        hash ^= layout.zobrist.playerCardIndex(playerDeckIndex) ^ layout.zobrist.playerCardIndex(index);
+        playerDeckIndex = index;
+    }
+
+    private void setInfectionDeckIndex(int index) {
+        hash ^= layout.zobrist.infectionCardIndex(infectionDeckIndex) ^ layout.zobrist.infectionCardIndex(index);
+        infectionDeckIndex = index;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SearchState state)) return false;
+
+        return Arrays.equals(cubes, state.cubes) && Arrays.equals(stations, state.stations)
+                && Arrays.equals(pawns, state.pawns) && Arrays.equals(hands, state.hands)
+                && Arrays.equals(cures, state.cures) && Arrays.equals(infectionDeck, state.infectionDeck)
+                && Arrays.equals(playerDeck, state.playerDeck) && playerDeckIndex == state.playerDeckIndex
+                && infectionDeckIndex == state.infectionDeckIndex && outbreaks == state.outbreaks
+                && infectionRate == state.infectionRate && epidemics == state.epidemics && turn == state.turn
+                && running == state.running && failed == state.failed && hash == state.hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+}
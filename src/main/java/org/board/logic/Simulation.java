@@ -0,0 +1,239 @@
+package org.board.logic;
+
+import org.board.entities.CityGraph;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Plays batches of games where every seat is played by an agent, without IO, and reports how the games went. The
+ * games run in parallel on a pool of threads, each game with its own seed, context and agent, so a batch plays out
+ * the same way whatever the number of threads.
+ */
+public class Simulation {
+    /* outcome of a single game, with the CPU time of the thread that played it (0 when the JVM can't measure it) */
+    public record GameResult(long seed, boolean won, int cures, int outbreaks, int epidemics, int turns, String status, long cpuNanos) {
+    }
+
+    /* outcome of a batch of games */
+    public record Report(ArrayList<GameResult> games, long elapsedNanos) {
+        public int getWins() {
+            var wins = 0;
+
+            for (var game : games) {
+                if (game.won()) wins += 1;
+            }
+
+            return wins;
+        }
+
+        public double getWinRate() {
+            return games.isEmpty() ? 0 : (double) getWins() / games.size();
+        }
+
+        public double getAverageTurns() {
+            double turns = 0;
+
+            for (var game : games) {
+                turns += game.turns();
+            }
+
+            return games.isEmpty() ? 0 : turns / games.size();
+        }
+
+        public double getGamesPerSecond() {
+            return games.size() / (elapsedNanos / 1e9);
+        }
+
+        public double getAverageCpuNanos() {
+            double cpu = 0;
+
+            for (var game : games) {
+                cpu += game.cpuNanos();
+            }
+
+            return games.isEmpty() ? 0 : cpu / games.size();
+        }
+
+        /**
+         * Prints the report.
+         * @param out the stream to print on.
+         */
+        public void print(PrintStream out) {
+            var cures = new TreeMap<Integer, Integer>();
+            var outbreaks = new TreeMap<Integer, Integer>();
+            var epidemics = new TreeMap<Integer, Integer>();
+            var statuses = new TreeMap<String, Integer>();
+            var minTurns = Integer.MAX_VALUE;
+            var maxTurns = 0;
+
+            for (var game : games) {
+                cures.merge(game.cures(), 1, Integer::sum);
+                outbreaks.merge(game.outbreaks(), 1, Integer::sum);
+                epidemics.merge(game.epidemics(), 1, Integer::sum);
+                statuses.merge(game.won() ? "Won" : game.status(), 1, Integer::sum);
+                minTurns = Math.min(minTurns, game.turns());
+                maxTurns = Math.max(maxTurns, game.turns());
+            }
+
+            out.printf("Games: %d, won %d (%.1f%%)%n", games.size(), getWins(), getWinRate() * 100);
+            out.printf("Turns per game: %.2f (min %d, max %d)%n", getAverageTurns(), games.isEmpty() ? 0 : minTurns, maxTurns);
+            out.println("Cures: " + cures);
+            out.println("Outbreaks: " + outbreaks);
+            out.println("Epidemics: " + epidemics);
+            out.println("Endings: " + statuses);
+            out.printf("Time: %.2fs, %.2f games per second, %.1fms CPU per game%n", elapsedNanos / 1e9, getGamesPerSecond(),
+                    getAverageCpuNanos() / 1e6);
+        }
+    }
+
+    /* transposition table size in megabytes for an agent playing a single game, which fills far less than the
+       default table (see Agent.setTranspositionTableSize) */
+    public static final int GAME_TABLE_SIZE = 2;
+
+    /* creates the agent playing each game */
+    private Supplier<Agent> agents;
+
+    /* number of games in a batch */
+    private int games = 100;
+
+    /* number of games played at the same time */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /* seed the seeds of the games are drawn from */
+    private long seed = 1;
+
+    /* number of seats at each game (2 - 4) */
+    private int players = 2;
+
+    /* the map the games are played on (null plays on the map file) */
+    private CityGraph map = null;
+
+    /**
+     * Creates a simulation played by agents with the default settings.
+     */
+    public Simulation() {
+        this(() -> {
+            var agent = new Agent();
+            agent.setTranspositionTableSize(GAME_TABLE_SIZE);
+            return agent;
+        });
+    }
+
+    /**
+     * Creates a simulation.
+     * @param agents creates the agent playing each game (a new agent for every game).
+     */
+    public Simulation(Supplier<Agent> agents) {
+        this.agents = agents;
+    }
+
+    public void setAgents(Supplier<Agent> agents) {
+        this.agents = agents;
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setPlayers(int players) {
+        this.players = players;
+    }
+
+    public void setMap(CityGraph map) {
+        this.map = map;
+    }
+
+    /**
+     * Plays the batch of games.
+     * @return the report of the games.
+     * @throws Exception when a game state errors.
+     */
+    public Report run() throws Exception {
+        var seeds = new SplittableRandom(seed);
+        var tasks = new ArrayList<Callable<GameResult>>();
+
+        for (int i = 0; i < games; i++) {
+            var gameSeed = seeds.nextLong();
+            tasks.add(() -> play(gameSeed));
+        }
+
+        var executor = Executors.newFixedThreadPool(threads);
+        var start = System.nanoTime();
+
+        try {
+            var results = new ArrayList<GameResult>();
+
+            for (var future : executor.invokeAll(tasks)) {
+                results.add(join(future));
+            }
+
+            return new Report(results, System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays a game until it ends. The CPU time is the time of the calling thread, the threads of an agent searching
+     * in parallel aren't counted.
+     * @param gameSeed the seed of the game.
+     * @return the outcome of the game.
+     * @throws Exception when the game state errors.
+     */
+    public GameResult play(long gameSeed) throws Exception {
+        var threadBean = ManagementFactory.getThreadMXBean();
+        var measured = threadBean.isCurrentThreadCpuTimeSupported();
+        var cpuStart = measured ? threadBean.getCurrentThreadCpuTime() : 0;
+
+        var context = map == null ? new GameContext(gameSeed, players) : new GameContext(map, gameSeed, players);
+        var state = new State(context);
+        state.debug = false;
+
+        var agent = agents.get();
+        agent.setQuiet(true);
+
+        var turns = 0;
+
+        while (state.isRunning()) {
+            agent.setPlayer(state.getCurrentPlayer());
+            agent.play(state);
+            turns += 1;
+        }
+
+        var cpuNanos = measured ? threadBean.getCurrentThreadCpuTime() - cpuStart : 0;
+
+        return new GameResult(gameSeed, !state.isFailed(), state.getCureCount(), state.getOutbreakMarkerState(), state.getEpidemics(), turns, state.getStatus(), cpuNanos);
+    }
+
+    /**
+     * Waits for a game and recovers the exception it failed with.
+     * @param future the game.
+     * @return the outcome of the game.
+     * @throws Exception when the game failed.
+     */
+    private static GameResult join(Future<GameResult> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.board.utils.Utils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class State {
 
@@ -38,14 +39,24 @@ public class State {
      */
     private int infectionRateMarkerState = 0;
 
-    /* Represents all the player cards on the board */
-    private ArrayList<PlayerCard> playerCards = new ArrayList<>();
+    /* Represents all the player cards on the board as card ids (see playerCardTable). The array is shared by clones,
+       so it is replaced by a shuffled copy instead of being shuffled in place. */
+    private int[] playerDeck = new int[0];
+
+    /* The player cards of the game by id - cards are immutable, so every clone shares the same cards */
+    private PlayerCard[] playerCardTable = new PlayerCard[0];
+
+    /* The city cards of the game by city, hands only hold the cities of their cards (shared by every clone) */
+    private PlayerCard[] cityCards = new PlayerCard[0];
 
     /* The index in the player cards deck, we shift the marker instead of removing cards. */
     private int playerCardIndex = 0;
 
-    /* Represents all the infection card on the board */
-    private ArrayList<InfectionCard> infectionCards = new ArrayList<>();
+    /* Represents all the infection card on the board as card ids, shared by clones like the player deck */
+    private int[] infectionDeck = new int[0];
+
+    /* The infection cards of the game by id (the id of the city), shared by every clone */
+    private InfectionCard[] infectionCardTable = new InfectionCard[0];
 
     /* The index in the infections cards deck, we shift the marker instead of removing cards. */
     private int infectionCardIndex = 0;
@@ -59,6 +70,9 @@ public class State {
     /* All the cities in the game (and on the board) */
     private ArrayList<City> cities = new ArrayList<>();
 
+    /* the map the cities and their routes come from (shared by every clone) */
+    private CityGraph graph;
+
     /* All the cubes in the game (note: not on the board) */
     private ArrayList<Cube> cubes = new ArrayList<>();
 
@@ -76,6 +90,63 @@ public class State {
     /* Reason of exist if it was a failed state (game over) */
     private String status = "";
 
+    /* Seeds the infection deck reshuffles so that a state and all its clones reshuffle the same way */
+    private long shuffleSeed = 0;
+
+    /* Identifies the order of the cards left in the decks of a sampled state (0 for the real order) */
+    private long deckKey = 0;
+
+    /* Zobrist keys for the map, shared by clones (null until the state has been initialised) */
+    private Zobrist zobrist = null;
+
+    /* Zobrist hash of the state - kept up to date incrementally by every change to the state */
+    private long hash = 0;
+
+    /* Map data for search states, shared by clones (null until a search state has been made) */
+    private SearchState.Layout searchLayout = null;
+
+    /* Records the changes made by each action so that they can be undone (null when actions aren't recorded) */
+    private UndoLog undoLog = null;
+
+    /* Kinds of changes recorded in the undo log */
+    private static final int UNDO_ACTION = 0;
+    private static final int UNDO_CUBE = 1;
+    private static final int UNDO_PAWN = 2;
+    private static final int UNDO_CARD_ADDED = 3;
+    private static final int UNDO_CARD_REMOVED = 4;
+    private static final int UNDO_STATION = 5;
+    private static final int UNDO_SHUFFLE = 6;
+
+    /* Occupancy index - kept up to date by every placement and removal of cubes, stations and pawns */
+
+    /* number of colours, including the invalid colour so that colours index by ordinal */
+    private static final int COLOURS = Colour.values().length;
+
+    /* maximum number of cubes of a colour in a city (the fourth causes an outbreak instead) */
+    private static final int MAX_CUBES_IN_CITY = Zobrist.MAX_CUBES_IN_CITY;
+
+    /* cubes of each colour in each city [city * colours + colour] */
+    private int[] cityCubeCounts;
+
+    /* the cubes of each colour in each city [(city * colours + colour) * max + n] */
+    private Cube[] cityCubes;
+
+    /* cubes of each colour on the board */
+    private int[] boardCubeCounts;
+
+    /* cubes of each colour off the board, the next one to be placed last [colour][n] */
+    private Cube[][] freeCubes;
+    private int[] freeCubeCounts;
+
+    /* cities with a research station, a bit per city */
+    private long[] stationMask;
+
+    /* research stations on the board */
+    private int stationCount;
+
+    /* pawns in each city, a bit per pawn [city] */
+    private int[] pawnMasks;
+
     /**
      * Create a new game state and gives you the option to choose to get IO input.
      * @param init chose if you want it to initialise or not (default is yes - see other constructor)
@@ -85,7 +156,7 @@ public class State {
         // you can choose if you want to initialise state at creation from IO;
         if (!init) return;
         this.debug = false;
-        initialise();
+        initialise(new GameContext());
         this.debug = true;
     }
 
@@ -94,41 +165,89 @@ public class State {
      * @throws Exception an exception in the case of an IO error.
      */
     State() throws Exception {
-        this(true);
+        this(new GameContext());
+    }
+
+    /**
+     * Creates a new game state from the pieces of a game context and asks the user for the IO input.
+     * @param context the context of the game, owning its players, cards, cubes and stations.
+     * @throws Exception an exception in the case of an IO error.
+     */
+    State(GameContext context) throws Exception {
+        this.debug = false;
+        initialise(context);
+        this.debug = true;
     }
 
     /* Initializers - initialises member variables */
 
     /**
      * Initialises the game state from IO.
+     * @param context the context of the game.
      * @throws Exception IO error
      */
-    private void initialise() throws Exception {
-        cities = Loader.loadCityGraph();
-        infectionCards = Loader.loadInfectionCards();
-        playerCards = Loader.loadPlayerCards();
-        cubes = Loader.loadCubes();
-        stations = Loader.loadStations();
+    private void initialise(GameContext context) throws Exception {
+        graph = context.getGraph();
+        cities = graph.getCities();
+        var infectionCards = Loader.loadInfectionCards(context);
+        loadDecks(Loader.loadPlayerCards(context), infectionCards);
+        cubes = Loader.loadCubes(context);
+        stations = Loader.loadStations(context);
+        indexBoard();
 
         // places a research station in Atlanta
         initialiseStation();
         outbreakMarkerState = 0;
         Arrays.fill(cureIndicatorState, 0);
 
-        players = Loader.loadPlayers();
+        players = Loader.loadPlayers(context);
         initialisePawns();
 
         dealPlayersCardsToPlayer();
         dealInfectionCardAndInfectionCities();
 
+        shuffleSeed = context.getRandom().nextLong();
         running = true;
+
+        zobrist = new Zobrist(cities.size(), playerDeck.length, infectionDeck.length);
+        hash = computeHash();
+    }
+
+    /**
+     * Lays out the decks from the shuffled cards of the game.
+     * @param playerCards the player cards in the order of the deck.
+     * @param infectionCards the infection cards in the order of the deck.
+     */
+    private void loadDecks(ArrayList<PlayerCard> playerCards, ArrayList<InfectionCard> infectionCards) {
+        // player card ids are their position in the initial deck.
+        playerCardTable = playerCards.toArray(new PlayerCard[0]);
+        playerDeck = new int[playerCards.size()];
+
+        cityCards = new PlayerCard[cities.size()];
+
+        for (var i = 0; i < playerDeck.length; i++) {
+            playerDeck[i] = i;
+
+            if (playerCardTable[i].getType() != Card.Epidemic) {
+                cityCards[playerCardTable[i].getCity()] = playerCardTable[i];
+            }
+        }
+
+        infectionCardTable = new InfectionCard[cities.size()];
+        infectionDeck = new int[infectionCards.size()];
+
+        for (var i = 0; i < infectionDeck.length; i++) {
+            var card = infectionCards.get(i);
+            infectionCardTable[card.getId()] = card;
+            infectionDeck[i] = card.getId();
+        }
     }
 
     /**
      * Initialise pawns to their default locations on the board.
      */
     private void initialisePawns() {
-        var atlanta = City.getCityByName(cities, "Atlanta");
+        var atlanta = graph.getCity("Atlanta");
 
         if (atlanta == null) {
            setGameOver("Atlanta couldn't be found.");
@@ -147,7 +266,7 @@ public class State {
      */
     private void initialiseStation() throws Exception {
         // getting the city from the list of cities
-        var atlanta = City.getCityByName(cities, "Atlanta");
+        var atlanta = graph.getCity("Atlanta");
 
         if (atlanta == null) {
             setGameOver("Atlanta couldn't be found.");
@@ -196,49 +315,61 @@ public class State {
         return turn;
     }
 
-    public int getCureCount() {
-        int cures = 0;
-
-        for (var cure : cureIndicatorState) {
-            if (cure == 0) continue;
-            cures += 1;
-        }
-
-        return cures;
+    /**
+     * Gets the Zobrist hash of the state, covering pawns, cubes, stations, hands, cures, markers, deck indices and turn.
+     * @return the 64-bit hash
+     */
+    public long getHash() {
+        return hash;
     }
 
     /**
-     * Gets all the suits for a players hand that is curable based on available cards.
-     * @param cards the list of cards available to the player.
-     * @return the suit index of each curable disease.
+     * Computes the Zobrist hash of the state from scratch.
+     * @return the 64-bit hash
      */
-    private ArrayList<Integer> getCurableDiseasesSuits(ArrayList<PlayerCard> cards) {
-        var cures = new ArrayList<Integer>();
+    long computeHash() {
+        long hash = 0;
 
-        // if the cards are less than five, you can't cure a disease.
-        if (cards.size() < 5) {
-            return cures;
-        }
+        for (var player : players) {
+            hash ^= zobrist.pawn(player.getPawn(), player.getCity());
 
-        // an int map to help keep track of available cards and their suits.
-        var map = new int[Colour.values().length];
+            for (var city = player.nextCard(0); city != -1; city = player.nextCard(city + 1)) {
+                hash ^= zobrist.card(player.getPawn(), city);
+            }
+        }
 
-        for (var card : cards) {
-            var colour = card.getColour();
+        for (var city : cities) {
+            for (var colour = 1; colour < Colour.values().length; colour++) {
+                hash ^= zobrist.cubes(city.getId(), colour, getCubesOfSuitInCity(city.getId(), Colour.values()[colour]));
+            }
+        }
 
-            // skipping over non colour based cards (epidemics);
-            if (colour == Colour.Invalid) continue;
+        for (var station : stations) {
+            if (station.empty()) continue;
+            hash ^= zobrist.station(station.getCity());
+        }
 
-            // counting the number of cards of the same colour.
-            map[colour.ordinal()] += 1;
+        for (var disease = 0; disease < cureIndicatorState.length; disease++) {
+            hash ^= zobrist.cure(disease, cureIndicatorState[disease]);
         }
 
-        for (var i = 0; i < map.length; i++) {
-            // filter colour that are up to five.
-            if (map[i] < 5) continue;
+        hash ^= zobrist.playerCardIndex(playerCardIndex);
+        hash ^= zobrist.infectionCardIndex(infectionCardIndex);
+        hash ^= zobrist.outbreaks(outbreakMarkerState);
+        hash ^= zobrist.infectionRate(infectionRateMarkerState);
+        hash ^= zobrist.epidemics(epidemics);
+        hash ^= zobrist.turn(turn);
+        hash ^= deckKey;
+
+        return hash;
+    }
+
+    public int getCureCount() {
+        int cures = 0;
 
-            // add only suits that are greater than 5.
-            cures.add(i);
+        for (var cure : cureIndicatorState) {
+            if (cure == 0) continue;
+            cures += 1;
         }
 
         return cures;
@@ -253,14 +384,25 @@ public class State {
      * @return the total research station on board.
      */
     public int getResearchStationsCount() {
-        var count = 0;
+        return stationCount;
+    }
 
-        for(var station : stations) {
-            if (station.empty()) continue;
-            count += 1;
-        }
+    /**
+     * Checks if there is a research station in a city.
+     * @param city the id of the city.
+     * @return true if the city has a station.
+     */
+    public boolean hasStation(int city) {
+        return (stationMask[city >>> 6] & (1L << city)) != 0;
+    }
 
-        return count;
+    /**
+     * Gets the pawns in a city.
+     * @param city the id of the city.
+     * @return a bit per pawn in the city.
+     */
+    public int getPawnsInCity(int city) {
+        return pawnMasks[city];
     }
 
     /**
@@ -268,27 +410,41 @@ public class State {
      * @return the possible actions for the current player turn.
      */
     public ArrayList<Option> getAllPossibleActions() {
-        var actions = new ArrayList<Option>();
+        var moves = new MoveBuffer(64);
+        generateMoves(moves);
 
-        loadTreatAndEradicateDiseaseOptions(actions);
+        var actions = new ArrayList<Option>(moves.size());
 
-        loadFerryOptions(actions);
+        for (int i = 0; i < moves.size(); i++) {
+            actions.add(toOption(moves.get(i)));
+        }
 
-        loadBuildAResearchStationAndDirectFlightOptions(actions);
+        return actions;
+    }
+
+    /**
+     * Generates all the possible actions for a players turn as packed moves, in the same order as
+     * getAllPossibleActions.
+     * @param moves the buffer the moves are added to.
+     */
+    public void generateMoves(MoveBuffer moves) {
+        loadTreatAndEradicateDiseaseOptions(moves);
+
+        loadFerryOptions(moves);
+
+        loadBuildAResearchStationAndDirectFlightOptions(moves);
 
         // checking if there is a research station in the current player location.
-        var isStationInCity = getStationsCountInCity(cities.get(getCurrentPlayerCity().getId())) > 0;
+        var isStationInCity = hasStation(getCurrentPlayer().getCity());
 
         if (!isStationInCity) {
-            return actions;
+            return;
         }
 
         // load options to discover a cure and shuttle a flight only if there is a research station in user location.
-        loadDiscoverCureOptions(actions);
-
-        loadShuttleFlightOptions(actions);
+        loadDiscoverCureOptions(moves);
 
-        return actions;
+        loadShuttleFlightOptions(moves);
     }
 
 
@@ -299,9 +455,8 @@ public class State {
     public int getFreeCubesCount() {
         int count = 0;
 
-        for (var cube : cubes) {
-            if (cube.getCity() == -1) continue;
-            count += 1;
+        for (var colourCount : boardCubeCounts) {
+            count += colourCount;
         }
 
         return count;
@@ -331,7 +486,69 @@ public class State {
      * Increase the current turn by 1
      */
     private void increaseTurn() {
-        turn = (turn + 1) % players.size();
+        var next = (turn + 1) % players.size();
+
+        if (zobrist != null)
+            hash ^= zobrist.turn(turn) ^ zobrist.turn(next);
+
+        turn = next;
+    }
+
+    /**
+     * Sets the value of a cure indicator.
+     * @param disease the index of the disease in the indicator.
+     * @param value the new value of the indicator.
+     */
+    private void setCureIndicator(int disease, int value) {
+        if (zobrist != null)
+            hash ^= zobrist.cure(disease, cureIndicatorState[disease]) ^ zobrist.cure(disease, value);
+
+        cureIndicatorState[disease] = value;
+    }
+
+    /**
+     * Moves the player deck marker.
+     * @param index the new index in the player deck.
+     */
+    private void setPlayerCardIndex(int index) {
+        if (zobrist != null)
+            hash ^= zobrist.playerCardIndex(playerCardIndex) ^ zobrist.playerCardIndex(index);
+
+        playerCardIndex = index;
+    }
+
+    /**
+     * Moves the infection deck marker.
+     * @param index the new index in the infection deck.
+     */
+    private void setInfectionCardIndex(int index) {
+        if (zobrist != null)
+            hash ^= zobrist.infectionCardIndex(infectionCardIndex) ^ zobrist.infectionCardIndex(index);
+
+        infectionCardIndex = index;
+    }
+
+    /**
+     * Increases the outbreak marker by one.
+     */
+    private void increaseOutbreakMarker() {
+        if (zobrist != null)
+            hash ^= zobrist.outbreaks(outbreakMarkerState) ^ zobrist.outbreaks(outbreakMarkerState + 1);
+
+        outbreakMarkerState += 1;
+    }
+
+    /**
+     * Increases the epidemics count and the infection rate marker by one.
+     */
+    private void increaseEpidemics() {
+        if (zobrist != null) {
+            hash ^= zobrist.epidemics(epidemics) ^ zobrist.epidemics(epidemics + 1);
+            hash ^= zobrist.infectionRate(infectionRateMarkerState) ^ zobrist.infectionRate(infectionRateMarkerState + 1);
+        }
+
+        epidemics += 1;
+        infectionRateMarkerState += 1;
     }
 
     /* Handling Actions */
@@ -348,6 +565,35 @@ public class State {
             System.out.println("- - Performing action " + choice.getName());
         }
 
+        performMove(choice.getMove(), actionCount);
+    }
+
+    /**
+     * Performs a packed move (see performAction).
+     * @param move the packed move generated by generateMoves.
+     * @param actionCount the action count within the turn (1 - 4).
+     * @throws Exception when the game state errors.
+     */
+    public void performAction(long move, int actionCount) throws Exception {
+        if (debug) {
+            System.out.println("---");
+            System.out.println("- - Performing action " + toOption(move).getName());
+        }
+
+        performMove(move, actionCount);
+    }
+
+    /**
+     * Performs a packed move without logging it.
+     * @param move the packed move.
+     * @param actionCount the action count within the turn (1 - 4).
+     * @throws Exception when the game state errors.
+     */
+    private void performMove(long move, int actionCount) throws Exception {
+        if (undoLog != null) {
+            recordAction();
+        }
+
         // skips performing the action if the game has ended.
         if (!running) {
             return;
@@ -355,37 +601,37 @@ public class State {
 
         var player = getCurrentPlayer();
 
-        switch (choice.getType()) {
+        switch (Move.getType(move)) {
             case TransferCard:
-                handleTransferCard(player, players.get(choice.getEndPlayer()), choice.getDisposeCard());
+                handleTransferCard(player, players.get(Move.getEndPlayer(move)), Move.getCard(move));
                 break;
             case DriveOrFerry:
-                handleDriveOrFerry(player, choice.getEndCity());
+                handleDriveOrFerry(player, Move.getEndCity(move));
                 break;
             case DirectFlight:
-                handleDirectFlight(player, choice.getDisposeCard(), choice.getEndCity());
+                handleDirectFlight(player, Move.getCard(move), Move.getEndCity(move));
                 break;
             case CharterFlight:
-                handleCharterFlight(player, choice.getDisposeCard(), choice.getEndCity());
+                handleCharterFlight(player, Move.getCard(move), Move.getEndCity(move));
                 break;
             case BuildResearchStation:
-                handleBuildAResearchStation(player, choice.getDisposeCard());
+                handleBuildAResearchStation(player, Move.getCard(move));
                 break;
             case TreatDiseaseRemoveOneCube:
-                handleTreatDiseaseRemoveOneCube( player,  choice.getSuit());
+                handleTreatDiseaseRemoveOneCube( player,  Move.getSuit(move));
                 break;
             case TreatDiseaseRemoveAll:
-                handleTreatDiseaseRemoveAll(player, choice.getSuit());
+                handleTreatDiseaseRemoveAll(player, Move.getSuit(move));
                 break;
             case DiscoverACure:
-                handleDiscoverACure(player, choice.getSuit());
+                handleDiscoverACure(player, Move.getSuit(move));
                 break;
             case ShuttleFlight:
-                handleShuttleFlight(player, choice.getEndCity());
+                handleShuttleFlight(player, Move.getEndCity(move));
                 break;
             case Invalid:
             default:
-                setGameOver("Invalid player action choice " + choice.getType());
+                setGameOver("Invalid player action choice " + Move.getType(move));
         }
 
         // check if the action perform lead to a win.
@@ -430,13 +676,26 @@ public class State {
      * @throws Exception when the suit of card is invalid or user doesn't have sufficient card.
      */
     private void handleDiscoverACure(Player player, int suit) throws Exception {
-        // removes 5 cards of a particular suit from the player hand
-        player.removeNCardsOfSuit(Colour.values()[suit], 5);
+        var count = player.getSuitCount(suit);
+
+        if (count < 5) {
+            throw new Exception("Something terribly wrong happened couldn't get suit " + Colour.values()[suit] + " of count 5 instead got " + count);
+        }
+
+        // removes the first 5 cards of a particular suit in the player hand (in city order)
+        var remaining = 5;
+
+        for (var city = player.nextCard(0); remaining > 0; city = player.nextCard(city + 1)) {
+            if (cityCards[city].getColour().ordinal() != suit) continue;
+
+            removeCardFromHand(player, city);
+            remaining -= 1;
+        }
 
         // removing one from the suit because the Colour enum has an extra invalid colour
         var suitIndexInIndicator = suit - 1;
         // updating the cure state according the coding defined during creation.
-        cureIndicatorState[suitIndexInIndicator] = 1;
+        setCureIndicator(suitIndexInIndicator, 1);
 
         if (debug)
             System.out.println("! Player " + player.getName() + " discovered cure for " + Colour.values()[suit]);
@@ -448,16 +707,11 @@ public class State {
      * @param suit the suit of cube to remove.
      */
     private void handleTreatDiseaseRemoveOneCube(Player player, int suit) {
-        // getting all the cubes on the board at that city
-        var cubesOnBoard = getCubesInCity(cities.get(player.getCity()));
+        var slot = player.getCity() * COLOURS + suit;
 
-        for (var cube : cubesOnBoard) {
-            // check the colour of the suit
-            if (cube.getColour().ordinal() != suit) continue;
-
-            // removing only the cubes that matches the suit.
-            removeCube(cube);
-            break;
+        // removing one of the cubes of the suit in the city.
+        if (cityCubeCounts[slot] > 0) {
+            removeCube(cityCubes[slot * MAX_CUBES_IN_CITY + cityCubeCounts[slot] - 1]);
         }
 
         // check if by removing the cube, it eradicated the disease.
@@ -468,20 +722,13 @@ public class State {
     }
 
     /**
-     * Gets all the cubes in a city.
-     * @param city returns the city name.
-     * @return a list of cubes.
+     * Counts the cubes of a particular suit in a city.
+     * @param city the id of the city.
+     * @param suit the colour of the cubes.
+     * @return the number of cubes.
      */
-    private ArrayList<Cube> getCubesInCity(City city) {
-        var cubesOnBoard = new ArrayList<Cube>();
-
-        for(var cube : cubes) {
-            if(cube.getCity() != city.getId()) continue;
-
-            cubesOnBoard.add(cube);
-        }
-
-        return cubesOnBoard;
+    public int getCubesOfSuitInCity(int city, Colour suit) {
+        return cityCubeCounts[city * COLOURS + suit.ordinal()];
     }
 
 
@@ -492,14 +739,11 @@ public class State {
      * @param suit the suit of disease to remove.
      */
     private void handleTreatDiseaseRemoveAll(Player player, int suit) {
-        // all the cubes on the board at that city
-        var cubesOnBoard = getCubesInCity(cities.get(player.getCity()));
-
-        for (var cube : cubesOnBoard) {
-            if (cube.getColour().ordinal() != suit) continue;
+        var slot = player.getCity() * COLOURS + suit;
 
-            // removing only cubes on the specified suit.
-            removeCube(cube);
+        // removing all the cubes of the suit in the city.
+        while (cityCubeCounts[slot] > 0) {
+            removeCube(cityCubes[slot * MAX_CUBES_IN_CITY + cityCubeCounts[slot] - 1]);
         }
 
         // check if by remove the cube, it eradicated the disease.
@@ -513,12 +757,12 @@ public class State {
      * Builds a research station at the players location by discarding a card. It assumes the card you are discarding
      * matches the current player location, and it does valid the player city against the card.
      * @param player the player with the card
-     * @param cardIndex the index of the card in the player hand
+     * @param cardCity the city of the card in the player hand
      * @throws Exception when the card city doesn't match the player city.
      */
-    private void handleBuildAResearchStation(Player player, int cardIndex) throws Exception {
+    private void handleBuildAResearchStation(Player player, int cardCity) throws Exception {
         // removes card from player hand
-        var card = player.removeCard(cardIndex);
+        var card = removeCardFromHand(player, cardCity);
 
         // checks if the card and player city are the same.
         if (card.getCity() != player.getCity()) {
@@ -537,12 +781,13 @@ public class State {
      * Handles chartered flight from one city to another. It assumes the required edges are met and also validates it by
      * checking the card city and the player city are a match. It ends the game if flight isn't possible.
      * @param player the player with the card
-     * @param cardIndex the index of th card in the players hand
+     * @param cardCity the city of the card in the players hand
      * @param endCity the city the player wants to end on.
+     * @throws Exception when the player doesn't hold the card.
      */
-    private void handleCharterFlight(Player player, int cardIndex, int endCity) {
+    private void handleCharterFlight(Player player, int cardCity, int endCity) throws Exception {
         // removing card from player hand
-        var card = player.removeCard(cardIndex);
+        var card = removeCardFromHand(player, cardCity);
 
         if (card.getCity() != player.getCity()) {
             setGameOver("Can't charter flight to city " + player.getCity() + " with card #" + card.getCity());
@@ -560,12 +805,13 @@ public class State {
      * Handles direct flight by disposing a card that matches the end city. It assumes all the edge cases are met, and
      * it validates the edge case of the card city and the end city matching. It ends the game if they do not match.
      * @param player the player with the card
-     * @param cardIndex the index of the card in the player's hand
+     * @param cardCity the city of the card in the player's hand
      * @param endCity the city the player wants to end up in (ideally matching the card city).
+     * @throws Exception when the player doesn't hold the card.
      */
-    private void handleDirectFlight(Player player, int cardIndex, int endCity) {
+    private void handleDirectFlight(Player player, int cardCity, int endCity) throws Exception {
         // disposing card form the player hand
-        var card = player.removeCard(cardIndex);
+        var card = removeCardFromHand(player, cardCity);
 
         // validating the end city and card city constraint.
         if (card.getCity() != endCity) {
@@ -594,13 +840,14 @@ public class State {
      * Transfers card from player one to player two. There's no condition for this action.
      * @param player the player who want to transfer card.
      * @param endPlayer the player who is receiving the card.
-     * @param cardIndex the index of the card in the initial player hand.
+     * @param cardCity the city of the card in the initial player hand.
+     * @throws Exception when the player doesn't hold the card.
      */
-    private void handleTransferCard(Player player, Player endPlayer, int cardIndex) {
+    private void handleTransferCard(Player player, Player endPlayer, int cardCity) throws Exception {
         // removing the card from initial player
-        var card = player.removeCard(cardIndex);
+        var card = removeCardFromHand(player, cardCity);
         // adding the card to the end player
-        endPlayer.addCard(card);
+        addCardToHand(endPlayer, card);
 
         if (debug)
             System.out.println("! Transferred card " + card + " to " + endPlayer.getName());
@@ -619,18 +866,11 @@ public class State {
         if (cureIndicatorState[suit - 1] == 0)
             return;
 
-        int count = 0;
-
-        // gets the count of all the cubes of tha colour across all cities on the board.
-        for (City city : cities) {
-            count += getCubesInCity(city).size();
-        }
-
         // doesn't eradicate disease if it is still on the board.
-        if (count != 0) return;
+        if (boardCubeCounts[suit] != 0) return;
 
         // mark the disease as eradicated.
-        cureIndicatorState[suit - 1] = 2;
+        setCureIndicator(suit - 1, 2);
 
         if (debug)
             System.out.println("** Yay! Eradicated disease " + Colour.values()[suit]);
@@ -643,8 +883,7 @@ public class State {
      */
     private void resolveEpidemic() throws Exception {
         // increase epidemics count and infection rate marker.
-        epidemics += 1;
-        infectionRateMarkerState += 1;
+        increaseEpidemics();
 
         // deal card and infect cities skipping over cured disease cards.
         dealInfectionCardAndInfectCity(3, true);
@@ -659,39 +898,64 @@ public class State {
             System.out.println("**Reshuffling infection cards deck.");
         }
 
-        // shuffle card and reset index.
-        Utils.shuffle(infectionCards, infectionCardIndex);
-        infectionCardIndex = 0;
+        if (undoLog != null) {
+            undoLog.pushObject(infectionDeck);
+            undoLog.push(UNDO_SHUFFLE);
+        }
+
+        // shuffle card and reset index (seeded by the state so searches on clones stay deterministic).
+        // the deck is shared with the clones of the state, so the shuffle works on a copy.
+        infectionDeck = infectionDeck.clone();
+        Utils.shuffle(infectionDeck, 0, infectionCardIndex, new SplittableRandom(shuffleSeed + epidemics));
+        setInfectionCardIndex(0);
     }
 
     /**
-     * Resolves an outbreak based on the outbreak resolving rules (see documentation)
-     * @param city the city to resolve outbreak from.
+     * Resolves an outbreak and the chain reaction it sets off based on the outbreak resolving rules (see
+     * documentation). The outbreaks are resolved in the order they happen from a worklist, and a city that already
+     * broke out in the chain doesn't take a cube from the outbreaks of its neighbours (see OutbreakChain).
+     * @param origin the city to resolve outbreak from.
      * @param suit the colour of disease to resolve outbreak.
      * @throws Exception when we run out of cubes.
      */
-    private void resolveOutbreak(City city, Colour suit) throws Exception {
-        if (debug) {
-            System.out.println();
-            System.out.println("* An outbreak occurred of disease " + suit + "  Resolving outbreak in city " + city.getName() + " #" + city.getId());
-        }
+    private void resolveOutbreak(City origin, Colour suit) throws Exception {
+        var chain = OutbreakChain.start(origin.getId(), cities.size());
+        var offsets = graph.getOffsets();
+        var adjacency = graph.getAdjacency();
 
-        outbreakMarkerState += 1;
+        while (!chain.isEmpty()) {
+            var city = cities.get(chain.next());
 
-        // check if outbreak mark is equal to 8
-        if (outbreakMarkerState >= 8) {
-            setGameOver("Exceeded maximum numbers of outbreaks allowed.");
-            return;
-        }
+            if (debug) {
+                System.out.println();
+                System.out.println("* An outbreak occurred of disease " + suit + "  Resolving outbreak in city " + city.getName() + " #" + city.getId());
+            }
 
-        for (var neighbour : city.getNeighbours()) {
-            // placing cubes in surrounding cities.
-            placeNCubesInCity(cities.get(neighbour), suit, 1);
+            increaseOutbreakMarker();
 
-            // checking if the game in still active.
-            if (!running) {
+            // check if outbreak mark is equal to 8
+            if (outbreakMarkerState >= 8) {
+                setGameOver("Exceeded maximum numbers of outbreaks allowed.");
                 return;
             }
+
+            for (var i = offsets[city.getId()]; i < offsets[city.getId() + 1]; i++) {
+                var neighbour = adjacency[i];
+                if (chain.hasVisited(neighbour)) continue;
+
+                // placing cubes in surrounding cities, an overflowing city joins the chain.
+                if (debug)
+                    System.out.println("** Infecting: added 1 " + suit + " cubes on " + cities.get(neighbour).getName() + " #" + neighbour);
+
+                if (addCubes(neighbour, suit, 1)) {
+                    chain.visit(neighbour);
+                }
+
+                // checking if the game in still active.
+                if (!running) {
+                    return;
+                }
+            }
         }
     }
 
@@ -713,9 +977,45 @@ public class State {
      * @param cube cube to remove from board.
      */
     public void removeCube(Cube cube) {
+        if (zobrist != null) {
+            var count = getCubesOfSuitInCity(cube.getCity(), cube.getColour());
+            var colour = cube.getColour().ordinal();
+            hash ^= zobrist.cubes(cube.getCity(), colour, count) ^ zobrist.cubes(cube.getCity(), colour, count - 1);
+        }
+
+        if (undoLog != null) {
+            undoLog.pushObject(cube);
+            undoLog.push(cube.getCity());
+            undoLog.push(UNDO_CUBE);
+        }
+
+        unindexCube(cube);
         cube.remove();
     }
 
+    /**
+     * Removes a card from a player's hand.
+     * @param player the player holding the card.
+     * @param cardCity the city of the card in the player's hand.
+     * @return the removed card.
+     * @throws Exception when the player doesn't hold the card.
+     */
+    private PlayerCard removeCardFromHand(Player player, int cardCity) throws Exception {
+        var card = cityCards[cardCity];
+        player.removeCard(card);
+
+        if (zobrist != null)
+            hash ^= zobrist.card(player.getPawn(), card.getCity());
+
+        if (undoLog != null) {
+            undoLog.pushObject(player);
+            undoLog.pushObject(card);
+            undoLog.push(UNDO_CARD_REMOVED);
+        }
+
+        return card;
+    }
+
 
     /* Dealers - Placing items on board */
 
@@ -738,7 +1038,7 @@ public class State {
             }
 
             for (int i = 0; i < dealCount; i++) {
-                player.addCard(dealPlayerCard());
+                addCardToHand(player, dealPlayerCard());
             }
         }
     }
@@ -748,8 +1048,8 @@ public class State {
      * @return a new infection card.
      */
     public InfectionCard dealInfectionCard() {
-        var infectionCard = infectionCards.get(infectionCardIndex);
-        infectionCardIndex += 1;
+        var infectionCard = infectionCardTable[infectionDeck[infectionCardIndex]];
+        setInfectionCardIndex(infectionCardIndex + 1);
         return infectionCard;
     }
 
@@ -759,11 +1059,6 @@ public class State {
      * @throws Exception if we run out of player cards.
      */
     public void dealNPlayerCardsToPlayer(int dealCount) throws Exception {
-        if (playerCardIndex >= playerCards.size()) {
-            setGameOver("Ran out of player cards");
-            return;
-        }
-
         var player = getCurrentPlayer();
         if (debug) {
             System.out.println();
@@ -771,11 +1066,17 @@ public class State {
         }
 
         for (int i = 0; i < dealCount; i++) {
+            // the deck may run out in the middle of a deal (when its size is odd).
+            if (playerCardIndex >= playerDeck.length) {
+                setGameOver("Ran out of player cards");
+                return;
+            }
+
             var card = dealPlayerCard();
 
             // only adds non-epidemic cards to the user
             if (card.getType() != Card.Epidemic) {
-                player.addCard(card);
+                addCardToHand(player, card);
                 continue;
             }
 
@@ -800,12 +1101,12 @@ public class State {
      * @return a new player card.
      */
     public PlayerCard dealPlayerCard() {
-        var playerCard = playerCards.get(playerCardIndex);
+        var playerCard = playerCardTable[playerDeck[playerCardIndex]];
 
         if (debug)
             System.out.println("** Dealing: dealing card #" + playerCard.getCity() + " of type " + playerCard.getType() + " of colour " + playerCard.getColour() );
 
-        playerCardIndex += 1;
+        setPlayerCardIndex(playerCardIndex + 1);
         return playerCard;
     }
 
@@ -866,7 +1167,7 @@ public class State {
      * @throws Exception when there isn't enough infection cards.
      */
     public void dealInfectionCardAndInfectCity(int n, boolean skipCured) throws Exception {
-        if (infectionCardIndex >= infectionCards.size()) {
+        if (infectionCardIndex >= infectionDeck.length) {
             setGameOver("Ran out of infection cards");
             return;
         }
@@ -894,36 +1195,43 @@ public class State {
         if (debug)
             System.out.println("** Infecting: added " + numberOfCubes + " " + suit + " cubes on " + city.getName() + " #" + city.getId() );
 
-        var cubesOfSuitOnBoard = 0;
+        if (addCubes(city.getId(), suit, numberOfCubes)) {
+            resolveOutbreak(city, suit);
+        }
+    }
 
+    /**
+     * Places cubes of a colour suit in a city up to numberOfCubes cubes, without resolving the outbreak.
+     * @param cityId the city to place disease cubes
+     * @param suit the suit of the disease
+     * @param numberOfCubes the number of cubes to place
+     * @return true when the city has more than 3 cubes of the suit in total and breaks out.
+     * @throws Exception when the cubes can't be placed.
+     */
+    private boolean addCubes(int cityId, Colour suit, int numberOfCubes) throws Exception {
         // counting the number of cubes of a particular suit on the board in that city.
-        for(var cube : cubes) {
-            if (cube.getCity() != city.getId()) continue;
-            if (cube.getColour() != suit) continue;
-            cubesOfSuitOnBoard += 1;
-        }
+        var cubesOfSuitOnBoard = getCubesOfSuitInCity(cityId, suit);
 
         // fulling infections rules
         int numberOfCubesToAdd = numberOfCubes - cubesOfSuitOnBoard;
 
         for (int i = 0; i < numberOfCubesToAdd; i++) {
             // gets and empty cube
-            var cube = Cube.getEmptyCube(cubes, suit);
+            var free = freeCubeCounts[suit.ordinal()];
+            var cube = free > 0 ? freeCubes[suit.ordinal()][free - 1] : null;
 
             if (cube == null) {
                 setGameOver("Out of cubes of the colour " + suit);
-                return;
+                return false;
             }
 
             // places a cube on the board in the current city.
-            placeCube(cube, city.getId());
+            placeCube(cube, cityId);
         }
 
         // check if it more than 3 in total and create outbreak if it is.
         var totalCubes = cubesOfSuitOnBoard + numberOfCubes;
-        if (totalCubes > 3) {
-            resolveOutbreak(city, suit);
-        }
+        return totalCubes > 3;
     }
 
     /**
@@ -933,7 +1241,38 @@ public class State {
      * @throws Exception fi there isn't enough cubes.
      */
     public void placeCube(Cube cube, int cityId) throws Exception {
+        if (zobrist != null) {
+            var count = getCubesOfSuitInCity(cityId, cube.getColour());
+            var colour = cube.getColour().ordinal();
+            hash ^= zobrist.cubes(cityId, colour, count) ^ zobrist.cubes(cityId, colour, count + 1);
+        }
+
         cube.setCity(cityId);
+        indexCube(cube);
+
+        if (undoLog != null) {
+            undoLog.pushObject(cube);
+            undoLog.push(-1);
+            undoLog.push(UNDO_CUBE);
+        }
+    }
+
+    /**
+     * Adds a card to a player's hand.
+     * @param player the player receiving the card.
+     * @param card the card to add.
+     */
+    private void addCardToHand(Player player, PlayerCard card) {
+        if (zobrist != null)
+            hash ^= zobrist.card(player.getPawn(), card.getCity());
+
+        if (undoLog != null) {
+            undoLog.pushObject(player);
+            undoLog.pushObject(card);
+            undoLog.push(UNDO_CARD_ADDED);
+        }
+
+        player.addCard(card);
     }
 
     /**
@@ -942,6 +1281,28 @@ public class State {
      * @param city the city
      */
     public void placePawn(Player player, int city) {
+        if (zobrist != null)
+            hash ^= zobrist.pawn(player.getPawn(), player.getCity()) ^ zobrist.pawn(player.getPawn(), city);
+
+        if (undoLog != null) {
+            undoLog.pushObject(player);
+            undoLog.push(player.getCity());
+            undoLog.push(UNDO_PAWN);
+        }
+
+        movePawn(player, city);
+    }
+
+    /**
+     * Moves a pawn and updates the pawns index.
+     * @param player player to move
+     * @param city the city
+     */
+    private void movePawn(Player player, int city) {
+        if (player.getCity() >= 0)
+            pawnMasks[player.getCity()] &= ~(1 << player.getPawn());
+
+        pawnMasks[city] |= 1 << player.getPawn();
         player.setCity(city);
     }
 
@@ -954,6 +1315,16 @@ public class State {
         var station = Station.getEmptyStation(stations);
 
         station.setCity(city);
+        stationMask[city >>> 6] |= 1L << city;
+        stationCount += 1;
+
+        if (zobrist != null)
+            hash ^= zobrist.station(city);
+
+        if (undoLog != null) {
+            undoLog.pushObject(station);
+            undoLog.push(UNDO_STATION);
+        }
     }
 
 
@@ -961,183 +1332,371 @@ public class State {
 
     /**
      * Loads a shuttle flight options.
-     * @param actions list of actions.
+     * @param moves list of moves.
      */
-    private void loadShuttleFlightOptions(ArrayList<Option> actions) {
+    private void loadShuttleFlightOptions(MoveBuffer moves) {
         var cityId = getCurrentPlayerCity().getId();
 
         for (var station : stations) {
             // station that matches the current city or isn't set on the board.
             if (station.getCity() == cityId || station.getCity() == -1) continue;
 
-            // get the city name
-            var cityName = cities.get(station.getCity()).getName();
-
             // add option to the list of actions.
-            var option = new Option("Take a shuttle flight to " + cityName + " research station");
-            option.setEndCity(station.getCity());
-            option.setType(OptionType.ShuttleFlight);
-            actions.add(option);
+            moves.add(Move.of(OptionType.ShuttleFlight, -1, station.getCity(), -1, -1));
         }
     }
 
     /**
      * Loads all discover cure options.
-     * @param actions a list of options
+     * @param moves list of moves.
      */
-    private void loadDiscoverCureOptions(ArrayList<Option> actions) {
+    private void loadDiscoverCureOptions(MoveBuffer moves) {
         // check if you can discover a cure
-        var suits = getCurableDiseasesSuits(getCurrentPlayer().getHand());
+        var player = getCurrentPlayer();
+
+        // skipping the invalid colour (epidemics), the hand keeps count of the cards of each suit.
+        for (var suit = 1; suit < COLOURS; suit++) {
+            // you need five cards of a suit to cure a disease.
+            if (player.getSuitCount(suit) < 5) continue;
 
-        for (var suit : suits) {
             // don't display the disease if it has been cured
             if (cureIndicatorState[suit - 1] == 1) continue;
 
-            // builds new option.
-            var option = new Option("Cure disease of colour " + Colour.values()[suit]);
-            option.setSuit(suit);
-            option.setType(OptionType.DiscoverACure);
-            actions.add(option);
+            moves.add(Move.of(OptionType.DiscoverACure, -1, -1, -1, suit));
         }
     }
 
     /**
      * Loads all the treat and eradicate disease options.
-     * @param actions list of actions.
+     * @param moves list of moves.
      */
-    private void loadTreatAndEradicateDiseaseOptions(ArrayList<Option> actions) {
+    private void loadTreatAndEradicateDiseaseOptions(MoveBuffer moves) {
         var city = getCurrentPlayerCity();
-        var cubesInCity = getCubesInCity(city);
-        var insertedCubeSuits = new boolean[6];
 
-        for (var cube : cubesInCity) {
-            // getting the colour of the inserted cubes.
-            var colour = cube.getColour().ordinal();
-            if (insertedCubeSuits[colour]) continue;
+        for (var colour = 1; colour < COLOURS; colour++) {
+            // skipping the colours without cubes in the city.
+            if (cityCubeCounts[city.getId() * COLOURS + colour] == 0) continue;
 
-            // flag the colour as inserted to skip on the next encounter.
-            insertedCubeSuits[colour] = true;
             var curred = cureIndicatorState[city.getColour().ordinal() - 1];
 
             // you can remove a disease cube from the board or all if it has been cured.
             // if it is the last cube of a curred disease it is eradicated
-
-            // building the option.
-            Option option;
-            if (curred == 1) {
-                // give the option to treat all if the disease has been cured.
-                option = new Option("Cure disease (remove all cubes because it has been cured) [" + cube.getColour() + "]");
-                option.setType(OptionType.TreatDiseaseRemoveAll);
-            } else {
-                option = new Option("Cure disease (remove one from cube) [" + cube.getColour() + "]");
-                option.setType(OptionType.TreatDiseaseRemoveOneCube);
-            }
-
-            option.setSuit(colour);
-            actions.add(option);
+            var type = curred == 1 ? OptionType.TreatDiseaseRemoveAll : OptionType.TreatDiseaseRemoveOneCube;
+            moves.add(Move.of(type, -1, -1, -1, colour));
         }
     }
 
     /**
      * Load ferry options.
-     * @param actions a list of options
+     * @param moves list of moves.
      */
-    private void loadFerryOptions(ArrayList<Option> actions) {
-        // getting all the neighbours for hte player current city.
-        var neighbours = getCurrentPlayerCity().getNeighbours();
-
-        for (var city : neighbours) {
-            // you can move via ferry to any city you are connected to
-            var name = cities.get(city).getName();
-
-            // building ferry option.
-            var option = new Option("Move by ferry to " + name);
-            option.setEndCity(city);
-            option.setType(OptionType.DriveOrFerry);
-            actions.add(option);
-        }
+    private void loadFerryOptions(MoveBuffer moves) {
+        // you can move via ferry to any city you are connected to (built with the city graph).
+        var city = getCurrentPlayer().getCity();
+        var offsets = graph.getOffsets();
+        moves.addAll(graph.getFerryMoves(), offsets[city], offsets[city + 1]);
     }
 
     /**
      * Loading build research station and direct flight
-     * @param actions a list of options.
+     * @param moves list of moves.
      */
-    private   void loadBuildAResearchStationAndDirectFlightOptions(ArrayList<Option> actions) {
+    private void loadBuildAResearchStationAndDirectFlightOptions(MoveBuffer moves) {
         var player = getCurrentPlayer();
 
-        for (var card : player.getHand()) {
-            if (card.getCity() == -1) continue;
-
-            var city = cities.get(card.getCity());
-            var cityName = city.getName();
-
-            var cardIndex = player.getHand().indexOf(card);
-
+        // the hand only holds city cards, walked in city order.
+        for (var cardCity = player.nextCard(0); cardCity != -1; cardCity = player.nextCard(cardCity + 1)) {
             // check if the player has a card that matches his current city.
-            if (card.getCity() == player.getCity()) {
+            if (cardCity == player.getCity()) {
                 // you can discard card to move to any city.
-                buildOptionsToFlyToAllCities(actions, card, cardIndex, player.getCity());
-                // you can discard this card to build a research station
-                var option = new Option("Dispose card [" + card.getCity() + ", " + cityName +  ", " + card.getColour() + "] to research station in current city " + cityName);
-                option.setType(OptionType.BuildResearchStation);
-                option.setDisposeCard(cardIndex);
-                actions.add(option);
-            } else if(card.getCity() != -1) {
+                buildOptionsToFlyToAllCities(moves, cardCity);
+                // you can discard this card to build a research station, while there is a station left to build.
+                if (stationCount < stations.size())
+                    moves.add(Move.of(OptionType.BuildResearchStation, cardCity, -1, -1, -1));
+            } else {
                 // you can discard card to fly directly to the city
-                var option = new Option("Dispose [" + card.getCity() + ", " + cityName + ", " + card.getColour() + "] to direct fly to " + cityName);
-                option.setType(OptionType.DirectFlight);
-                option.setDisposeCard(cardIndex);
-                option.setEndCity(card.getCity());
-                actions.add(option);
+                moves.add(Move.of(OptionType.DirectFlight, cardCity, cardCity, -1, -1));
             }
 
             // you can transfer card to other players.
-            buildOptionsToTransferCardToPlayers(actions, cardIndex);
+            buildOptionsToTransferCardToPlayers(moves, cardCity);
         }
     }
 
     /**
      * Builds all options to transfer card to other players.
-     * @param actions the list of options
-     * @param cardIndex the index of the cad in the player hand.
+     * @param moves list of moves.
+     * @param cardCity the city of the card in the player hand.
      */
-    private void buildOptionsToTransferCardToPlayers(ArrayList<Option> actions, int cardIndex) {
+    private void buildOptionsToTransferCardToPlayers(MoveBuffer moves, int cardCity) {
         for(var player : players) {
             // skips current player for transfer options.
             if (player.getPawn() == getCurrentPlayer().getPawn()) continue;
 
-            // builds option for each player
-            var option = new Option("Transfer card to player [" + player.getName() + "]");
-            option.setType(OptionType.TransferCard);
-            option.setEndPlayer(player.getPawn());
-            option.setDisposeCard(cardIndex);
-            actions.add(option);
+            moves.add(Move.of(OptionType.TransferCard, cardCity, -1, player.getPawn(), -1));
+        }
+    }
+
+    /**
+     * Builds the options to fly to all the cities from the current city.
+     * @param moves list of moves.
+     * @param cardCity the city of the card in player hand
+     */
+    private void buildOptionsToFlyToAllCities(MoveBuffer moves, int cardCity) {
+        // the moves to every other city are built with the city graph, only the card is added.
+        var city = getCurrentPlayer().getCity();
+        var charterMoves = graph.getCharterMoves();
+        moves.addAll(charterMoves, 0, city, Move.card(cardCity));
+        moves.addAll(charterMoves, city + 1, charterMoves.length, Move.card(cardCity));
+    }
+
+    /**
+     * Creates the option of a packed move. The name of the option is only rendered when it is displayed, but it
+     * describes the state the move was generated in.
+     * @param move the packed move
+     * @return the option
+     */
+    public Option toOption(long move) {
+        var type = Move.getType(move);
+        var card = Move.getCard(move) == -1 ? null : cityCards[Move.getCard(move)];
+        var cardCity = card == null || card.getCity() == -1 ? null : cities.get(card.getCity());
+        var endCity = Move.getEndCity(move) == -1 ? null : cities.get(Move.getEndCity(move));
+        var endPlayer = Move.getEndPlayer(move) == -1 ? null : players.get(Move.getEndPlayer(move));
+        var suit = Move.getSuit(move);
+
+        return new Option(move, () -> getMoveName(type, card, cardCity, endCity, endPlayer, suit));
+    }
+
+    /**
+     * Renders the human-readable name of a move.
+     * @param type the type of the move
+     * @param card the card disposed by the move
+     * @param cardCity the city of the card
+     * @param endCity the city to end on
+     * @param endPlayer the player to end on
+     * @param suit the colour suit of the move
+     * @return the name of the move
+     */
+    private static String getMoveName(OptionType type, PlayerCard card, City cardCity, City endCity, Player endPlayer, int suit) {
+        return switch (type) {
+            case ShuttleFlight -> "Take a shuttle flight to " + endCity.getName() + " research station";
+            case DiscoverACure -> "Cure disease of colour " + Colour.values()[suit];
+            case TreatDiseaseRemoveAll -> "Cure disease (remove all cubes because it has been cured) [" + Colour.values()[suit] + "]";
+            case TreatDiseaseRemoveOneCube -> "Cure disease (remove one from cube) [" + Colour.values()[suit] + "]";
+            case DriveOrFerry -> "Move by ferry to " + endCity.getName();
+            case BuildResearchStation -> "Dispose card [" + card.getCity() + ", " + cardCity.getName() + ", " + card.getColour() + "] to research station in current city " + cardCity.getName();
+            case DirectFlight -> "Dispose [" + card.getCity() + ", " + cardCity.getName() + ", " + card.getColour() + "] to direct fly to " + cardCity.getName();
+            case CharterFlight -> "Dispose [" + card.getCity() + ", " + cardCity.getName() + ", " + card.getColour() + "] to fly to " + endCity.getName();
+            case TransferCard -> "Transfer card to player [" + endPlayer.getName() + "]";
+            default -> "Invalid action";
+        };
+    }
+
+
+    /* Undoing Actions */
+
+    /**
+     * Starts or stops recording the changes made by each action, so that actions can be undone in place.
+     * @param undoable true to record the actions.
+     */
+    public void setUndoable(boolean undoable) {
+        undoLog = undoable ? new UndoLog() : null;
+    }
+
+    /**
+     * Records the markers, indices and end state before an action. Changes to cubes, pawns, hands, stations and
+     * decks are recorded by the methods making them.
+     */
+    private void recordAction() {
+        undoLog.pushObject(status);
+
+        for (var cure : cureIndicatorState) {
+            undoLog.push(cure);
         }
+
+        undoLog.push(outbreakMarkerState);
+        undoLog.push(infectionRateMarkerState);
+        undoLog.push(epidemics);
+        undoLog.push(playerCardIndex);
+        undoLog.push(infectionCardIndex);
+        undoLog.push(turn);
+        undoLog.push((running ? 1 : 0) | (failed ? 2 : 0));
+        undoLog.pushLong(hash);
+        undoLog.push(UNDO_ACTION);
     }
 
     /**
-     * Builds the options to fly to tall cities
-     * @param actions list of options
-     * @param card the current card
-     * @param cardIndex the index of the card in player hand
-     * @param currentCity the current city.
+     * Reverts the last action performed on the state.
+     * @throws Exception when there isn't any recorded action to undo.
+     */
+    public void undo() throws Exception {
+        if (undoLog == null || undoLog.isEmpty()) {
+            throw new Exception("There isn't any recorded action to undo.");
+        }
+
+        while (true) {
+            switch (undoLog.pop()) {
+                case UNDO_CUBE -> {
+                    var city = undoLog.pop();
+                    var cube = (Cube) undoLog.popObject();
+
+                    if (city == -1) {
+                        unindexCube(cube);
+                        cube.remove();
+                    } else {
+                        cube.setCity(city);
+                        indexCube(cube);
+                    }
+                }
+                case UNDO_PAWN -> {
+                    var city = undoLog.pop();
+                    movePawn((Player) undoLog.popObject(), city);
+                }
+                case UNDO_CARD_ADDED -> {
+                    var card = (PlayerCard) undoLog.popObject();
+                    ((Player) undoLog.popObject()).removeCard(card);
+                }
+                case UNDO_CARD_REMOVED -> {
+                    var card = (PlayerCard) undoLog.popObject();
+                    ((Player) undoLog.popObject()).addCard(card);
+                }
+                case UNDO_STATION -> {
+                    var station = (Station) undoLog.popObject();
+                    var city = station.getCity();
+
+                    station.remove();
+                    stationCount -= 1;
+
+                    // another station may have been built in the same city.
+                    if (getStationsCountInCity(cities.get(city)) == 0)
+                        stationMask[city >>> 6] &= ~(1L << city);
+                }
+                case UNDO_SHUFFLE -> infectionDeck = (int[]) undoLog.popObject();
+                case UNDO_ACTION -> {
+                    hash = undoLog.popLong();
+
+                    var flags = undoLog.pop();
+                    running = (flags & 1) != 0;
+                    failed = (flags & 2) != 0;
+
+                    turn = undoLog.pop();
+                    infectionCardIndex = undoLog.pop();
+                    playerCardIndex = undoLog.pop();
+                    epidemics = undoLog.pop();
+                    infectionRateMarkerState = undoLog.pop();
+                    outbreakMarkerState = undoLog.pop();
+
+                    for (var i = cureIndicatorState.length - 1; i >= 0; i--) {
+                        cureIndicatorState[i] = undoLog.pop();
+                    }
+
+                    status = (String) undoLog.popObject();
+                    return;
+                }
+                default -> throw new Exception("Corrupted undo log.");
+            }
+        }
+    }
+
+
+    /* Occupancy Index */
+
+    /**
+     * Builds the occupancy index from the cubes, stations and pawns on the board.
      */
-    private void buildOptionsToFlyToAllCities(ArrayList<Option> actions, PlayerCard card, int cardIndex, int currentCity) {
-        var cardCity = cities.get(card.getCity());
-        var cardCityName = cardCity.getName();
+    private void indexBoard() {
+        cityCubeCounts = new int[cities.size() * COLOURS];
+        cityCubes = new Cube[cities.size() * COLOURS * MAX_CUBES_IN_CITY];
+        boardCubeCounts = new int[COLOURS];
+        freeCubes = new Cube[COLOURS][];
+        freeCubeCounts = new int[COLOURS];
 
-        for (var city: cities) {
-            if (city.getId() == currentCity) continue;
+        var cubesOfColour = new int[COLOURS];
 
-            // building options of cities to fly to
-            var option = new Option("Dispose [" + card.getCity() + ", " + cardCityName + ", " + card.getColour() + "] to fly to " + city.getName());
-            option.setDisposeCard(cardIndex);
-            option.setEndCity(city.getId());
-            option.setType(OptionType.CharterFlight);
-            actions.add(option);
+        for (var cube : cubes) {
+            cubesOfColour[cube.getColour().ordinal()] += 1;
+        }
+
+        for (var colour = 0; colour < COLOURS; colour++) {
+            freeCubes[colour] = new Cube[cubesOfColour[colour]];
+        }
+
+        // stacking the free cubes from the last one, so that the first cube of a colour is placed first.
+        for (var i = cubes.size() - 1; i >= 0; i--) {
+            var cube = cubes.get(i);
+            var colour = cube.getColour().ordinal();
+
+            if (cube.empty()) {
+                freeCubes[colour][freeCubeCounts[colour]++] = cube;
+            } else {
+                var slot = cube.getCity() * COLOURS + colour;
+                cityCubes[slot * MAX_CUBES_IN_CITY + cityCubeCounts[slot]++] = cube;
+                boardCubeCounts[colour] += 1;
+            }
+        }
+
+        stationMask = new long[(cities.size() + 63) >>> 6];
+        stationCount = 0;
+
+        for (var station : stations) {
+            if (station.empty()) continue;
+
+            stationMask[station.getCity() >>> 6] |= 1L << station.getCity();
+            stationCount += 1;
+        }
+
+        pawnMasks = new int[cities.size()];
+
+        for (var player : players) {
+            pawnMasks[player.getCity()] |= 1 << player.getPawn();
         }
     }
 
+    /**
+     * Adds a cube that has just been placed on the board to the index.
+     * @param cube the cube (already set on its city)
+     */
+    private void indexCube(Cube cube) {
+        var colour = cube.getColour().ordinal();
+        var slot = cube.getCity() * COLOURS + colour;
+        var free = freeCubes[colour];
+
+        // the cube is normally the last free cube, it is swapped there otherwise.
+        for (var i = freeCubeCounts[colour] - 1; i >= 0; i--) {
+            if (free[i] != cube) continue;
+
+            free[i] = free[freeCubeCounts[colour] - 1];
+            free[--freeCubeCounts[colour]] = null;
+            break;
+        }
+
+        cityCubes[slot * MAX_CUBES_IN_CITY + cityCubeCounts[slot]++] = cube;
+        boardCubeCounts[colour] += 1;
+    }
+
+    /**
+     * Removes a cube that is about to be taken off the board from the index.
+     * @param cube the cube (still set on its city)
+     */
+    private void unindexCube(Cube cube) {
+        var colour = cube.getColour().ordinal();
+        var slot = cube.getCity() * COLOURS + colour;
+        var start = slot * MAX_CUBES_IN_CITY;
+        var last = start + cityCubeCounts[slot] - 1;
+
+        for (var i = start; i <= last; i++) {
+            if (cityCubes[i] != cube) continue;
+
+            cityCubes[i] = cityCubes[last];
+            cityCubes[last] = null;
+            break;
+        }
+
+        cityCubeCounts[slot] -= 1;
+        boardCubeCounts[colour] -= 1;
+        freeCubes[colour][freeCubeCounts[colour]++] = cube;
+    }
+
 
     /* State Cloning */
 
@@ -1153,16 +1712,21 @@ public class State {
         state.cureIndicatorState = cureIndicatorState.clone();
         state.infectionRateMarkerState = infectionRateMarkerState;
 
-        state.playerCards = PlayerCard.getCards(playerCards);
+        // the decks and cards are shared, decks are copied when they are shuffled.
+        state.playerDeck = playerDeck;
+        state.playerCardTable = playerCardTable;
+        state.cityCards = cityCards;
         state.playerCardIndex = playerCardIndex;
 
-        state.infectionCards = InfectionCard.getCards(infectionCards);
+        state.infectionDeck = infectionDeck;
+        state.infectionCardTable = infectionCardTable;
         state.infectionCardIndex = infectionCardIndex;
 
         state.players = Player.getPlayers(players);
         state.turn = turn;
 
         state.cities = cities;
+        state.graph = graph;
         state.cubes = Cube.getCubes(cubes);
 
         state.stations = Station.getStations(stations);
@@ -1172,6 +1736,232 @@ public class State {
         state.status = status;
 
         state.epidemics = epidemics;
+        state.shuffleSeed = shuffleSeed;
+        state.deckKey = deckKey;
+
+        state.zobrist = zobrist;
+        state.hash = hash;
+        state.searchLayout = searchLayout;
+
+        state.indexBoard();
+
+        return state;
+    }
+
+    /**
+     * Deep clones the state with the cards that haven't been drawn yet in a random order, so that a search can look
+     * ahead without knowing the real order of the decks. The infection deck reshuffles of the copy are sampled too.
+     * @param seed the seed of the sampled order.
+     * @return a new state.
+     * @throws Exception if there isn't any infection card or disease cube.
+     */
+    public State determinize(long seed) throws Exception {
+        var state = deepClone();
+        var random = new SplittableRandom(seed);
+
+        state.playerDeck = playerDeck.clone();
+        state.infectionDeck = infectionDeck.clone();
+        Utils.shuffle(state.playerDeck, playerCardIndex, playerDeck.length, random);
+        Utils.shuffle(state.infectionDeck, infectionCardIndex, infectionDeck.length, random);
+        state.shuffleSeed = random.nextLong();
+
+        // the hash covers the deck order through the key, so that sampled states don't share searched subtrees.
+        state.hash ^= state.deckKey;
+        state.deckKey = random.nextLong();
+        state.hash ^= state.deckKey;
+
+        return state;
+    }
+
+    /**
+     * Converts the state to a compact search state.
+     * @return the search state
+     */
+    SearchState toSearchState() {
+        if (searchLayout == null) {
+            searchLayout = buildSearchLayout();
+        }
+
+        var layout = searchLayout;
+        var search = new SearchState(layout);
+
+        search.cubes = new long[(cities.size() + 7) >>> 3];
+        search.boardCubes = boardCubeCounts.clone();
+
+        for (var city = 0; city < cities.size(); city++) {
+            for (var colour = 1; colour < COLOURS; colour++) {
+                var bit = (city * SearchState.DISEASES + colour - 1) * 2;
+                search.cubes[bit >>> 6] |= (long) cityCubeCounts[city * COLOURS + colour] << bit;
+            }
+        }
+
+        search.stationMask = stationMask.clone();
+        search.stations = new int[stations.size()];
+        search.stationCount = stationCount;
+
+        for (var i = 0; i < stations.size(); i++) {
+            search.stations[i] = stations.get(i).getCity();
+        }
+
+        search.pawns = new int[players.size()];
+        search.hands = new long[players.size() * layout.cityWords];
+        search.handSizes = new byte[players.size()];
+
+        for (var player : players) {
+            search.pawns[player.getPawn()] = player.getCity();
+            search.handSizes[player.getPawn()] = (byte) player.getHandSize();
+
+            for (var city = player.nextCard(0); city != -1; city = player.nextCard(city + 1)) {
+                search.hands[player.getPawn() * layout.cityWords + (city >>> 6)] |= 1L << city;
+            }
+        }
+
+        search.playerDeck = new int[playerDeck.length];
+        search.playerDeckIndex = playerCardIndex;
+
+        for (var i = 0; i < playerDeck.length; i++) {
+            var card = playerCardTable[playerDeck[i]];
+            search.playerDeck[i] = card.getType() == Card.Epidemic ? SearchState.EPIDEMIC : card.getCity();
+        }
+
+        search.infectionDeck = new int[infectionDeck.length];
+        search.infectionDeckIndex = infectionCardIndex;
+
+        for (var i = 0; i < infectionDeck.length; i++) {
+            search.infectionDeck[i] = infectionDeck[i];
+        }
+
+        search.cures = new byte[cureIndicatorState.length];
+
+        for (var i = 0; i < cureIndicatorState.length; i++) {
+            search.cures[i] = (byte) cureIndicatorState[i];
+        }
+
+        search.outbreaks = outbreakMarkerState;
+        search.infectionRate = infectionRateMarkerState;
+        search.epidemics = epidemics;
+        search.turn = turn;
+        search.running = running;
+        search.failed = failed;
+        search.status = status;
+        search.shuffleSeed = shuffleSeed;
+        search.deckKey = deckKey;
+        search.hash = hash;
+
+        return search;
+    }
+
+    /**
+     * Builds the map data shared by the search states of the game.
+     * @return the layout
+     */
+    private SearchState.Layout buildSearchLayout() {
+        var colours = new byte[cities.size()];
+
+        for (var city : cities) {
+            colours[city.getId()] = (byte) city.getColour().ordinal();
+        }
+
+        var cubeSupply = new int[COLOURS];
+
+        for (var cube : cubes) {
+            cubeSupply[cube.getColour().ordinal()] += 1;
+        }
+
+        return new SearchState.Layout(colours, graph, cubeSupply, players.size(), zobrist);
+    }
+
+    /**
+     * Creates a clone of the state with the board, hands, decks and markers of a search state.
+     * @param search a search state converted from this state or from one of its clones.
+     * @return a new state
+     * @throws Exception when the search state doesn't fit the board of the state.
+     */
+    State fromSearchState(SearchState search) throws Exception {
+        var state = deepClone();
+
+        // putting every cube, station and card back in the box before laying out the search state.
+        for (var cube : state.cubes) {
+            cube.remove();
+        }
+
+        for (var station : state.stations) {
+            station.remove();
+        }
+
+        var playerCardsByCity = new int[cities.size()];
+        var epidemicCards = new ArrayList<Integer>();
+
+        for (var id = 0; id < playerCardTable.length; id++) {
+            var card = playerCardTable[id];
+
+            if (card.getType() == Card.Epidemic) {
+                epidemicCards.add(id);
+            } else {
+                playerCardsByCity[card.getCity()] = id;
+            }
+        }
+
+        for (var player : state.players) {
+            player.clearHand();
+        }
+
+        var colours = Colour.values();
+
+        for (var city = 0; city < cities.size(); city++) {
+            for (var colour = 1; colour < COLOURS; colour++) {
+                for (var n = search.getCubes(city, colour); n > 0; n--) {
+                    Cube.getEmptyCube(state.cubes, colours[colour]).setCity(city);
+                }
+            }
+        }
+
+        for (var i = 0; i < search.stations.length; i++) {
+            if (search.stations[i] == -1) continue;
+            state.stations.get(i).setCity(search.stations[i]);
+        }
+
+        for (var player : state.players) {
+            player.setCity(search.getPawnCity(player.getPawn()));
+
+            for (var city = 0; city < cities.size(); city++) {
+                if (search.hasCard(player.getPawn(), city)) player.addCard(cityCards[city]);
+            }
+        }
+
+        // laying out the decks in the order of the search state (epidemic cards are interchangeable).
+        state.playerDeck = new int[search.playerDeck.length];
+
+        for (int i = 0, epidemic = 0; i < search.playerDeck.length; i++) {
+            var city = search.playerDeck[i];
+            state.playerDeck[i] = city == SearchState.EPIDEMIC ? epidemicCards.get(epidemic++) : playerCardsByCity[city];
+        }
+
+        state.infectionDeck = new int[search.infectionDeck.length];
+
+        for (var i = 0; i < search.infectionDeck.length; i++) {
+            state.infectionDeck[i] = search.infectionDeck[i];
+        }
+
+        state.playerCardIndex = search.playerDeckIndex;
+        state.infectionCardIndex = search.infectionDeckIndex;
+
+        for (var i = 0; i < cureIndicatorState.length; i++) {
+            state.cureIndicatorState[i] = search.cures[i];
+        }
+
+        state.outbreakMarkerState = search.outbreaks;
+        state.infectionRateMarkerState = search.infectionRate;
+        state.epidemics = search.epidemics;
+        state.turn = search.turn;
+        state.running = search.running;
+        state.failed = search.failed;
+        state.status = search.status;
+        state.shuffleSeed = search.shuffleSeed;
+        state.deckKey = search.deckKey;
+
+        state.indexBoard();
+        state.hash = state.computeHash();
 
         return state;
     }
@@ -1216,8 +2006,8 @@ public class State {
         System.out.println("Outbreak Marker " + outbreakMarkerState + "/ 8");
         System.out.println("Infection Rate Marker " + infectionRateMarkerState);
         System.out.println("Cure Indicator State " + Arrays.toString(cureIndicatorState) + " Red, Blue, Yellow, Black");
-        System.out.println("Player Deck " + (playerCardIndex + 1) + "/" + playerCards.size());
-        System.out.println("Infection Cards " + (infectionCardIndex + 1) + "/" + infectionCards.size());
+        System.out.println("Player Deck " + (playerCardIndex + 1) + "/" + playerDeck.length);
+        System.out.println("Infection Cards " + (infectionCardIndex + 1) + "/" + infectionDeck.length);
         System.out.println("\n\n");
     }
 
@@ -1269,7 +2059,7 @@ public class State {
         var builder = new StringBuilder();
 
         for(var player : players) {
-            if(player.getCity() != city.getId()) continue;
+            if((pawnMasks[city.getId()] & (1 << player.getPawn())) == 0) continue;
 
             if (builder.length() > 1) {
                 builder.append(", ");
@@ -1287,7 +2077,7 @@ public class State {
     public void printPlayersHands() {
         System.out.println("\n\n---PLAYER CARDS---\n");
         for (var player : players) {
-            player.printCards();
+            player.printCards(cityCards);
             System.out.println();
         }
         System.out.println("\n\n");
@@ -0,0 +1,141 @@
+package org.board.logic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, lock-free cache of searched subtrees keyed by the Zobrist hash of the state at their root. Entries are
+ * always replaced on collision. Each slot stores its key xor'ed with its data, so an entry torn by a concurrent
+ * write fails validation and is treated as a miss instead of returning mixed data.
+ */
+public class TranspositionTable {
+    /* longs per entry: check word, rating, epidemics and cards */
+    private static final int ENTRY_LONGS = 4;
+
+    /* size of an entry in bytes */
+    private static final int ENTRY_BYTES = ENTRY_LONGS * Long.BYTES;
+
+    /* the entries, laid out back to back */
+    private final AtomicLongArray entries;
+
+    /* mask turning a hash into an entry index (entry count is a power of two) */
+    private final int mask;
+
+    /* lookup counters */
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a table using at most the given amount of memory.
+     * @param megabytes the memory footprint of the table.
+     */
+    public TranspositionTable(int megabytes) {
+        var entryCount = Math.max(1L, (long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        // rounding down to a power of two and staying within the array size limit.
+        var capacity = (int) Math.min(Long.highestOneBit(entryCount), 1 << 28);
+
+        entries = new AtomicLongArray(capacity * ENTRY_LONGS);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Computes the key of a subtree from the hash of its root state, the action count reached at it and the
+     * action count of its leaves.
+     * @param hash the Zobrist hash of the state.
+     * @param count the action count of the node.
+     * @param depth the action count of the leaves.
+     * @return the key
+     */
+    public static long key(long hash, int count, int depth) {
+        return hash ^ (count * 0x9E3779B97F4A7C15L) ^ (depth * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    /**
+     * Looks up a subtree.
+     * @param key the key of the subtree.
+     * @return the stored outcome (without an option) or null when the subtree isn't in the table.
+     */
+    public Agent.Outcome get(long key) {
+        var index = index(key);
+
+        var check = entries.getOpaque(index);
+        var rating = entries.getOpaque(index + 1);
+        var epidemics = entries.getOpaque(index + 2);
+        var cards = entries.getOpaque(index + 3);
+
+        if ((check ^ rating ^ epidemics ^ cards) != key) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return new Agent.Outcome(null, Double.longBitsToDouble(epidemics), Double.longBitsToDouble(rating), Double.longBitsToDouble(cards));
+    }
+
+    /**
+     * Stores a subtree, replacing whatever occupied its slot.
+     * @param key the key of the subtree.
+     * @param outcome the outcome of the subtree.
+     */
+    public void put(long key, Agent.Outcome outcome) {
+        var index = index(key);
+
+        var rating = Double.doubleToRawLongBits(outcome.rating());
+        var epidemics = Double.doubleToRawLongBits(outcome.epidemics());
+        var cards = Double.doubleToRawLongBits(outcome.cards());
+
+        entries.setOpaque(index, key ^ rating ^ epidemics ^ cards);
+        entries.setOpaque(index + 1, rating);
+        entries.setOpaque(index + 2, epidemics);
+        entries.setOpaque(index + 3, cards);
+    }
+
+    /**
+     * Gets the position of the first long of the entry for a key.
+     * @param key the key
+     * @return the array index
+     */
+    private int index(long key) {
+        // mixing the key so that the low bits used for the index depend on all of it.
+        var mixed = key * 0xBF58476D1CE4E5B9L;
+        mixed ^= mixed >>> 31;
+
+        return ((int) mixed & mask) * ENTRY_LONGS;
+    }
+
+    /**
+     * Gets the number of lookups that found their subtree.
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that didn't find their subtree.
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the memory used by the entries.
+     * @return the size in bytes
+     */
+    public long getSizeInBytes() {
+        return (long) entries.length() * Long.BYTES;
+    }
+
+    /**
+     * Removes all the entries and resets the counters.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.setOpaque(i, 0);
+        }
+
+        hits.reset();
+        misses.reset();
+    }
+}
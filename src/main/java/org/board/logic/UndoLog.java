@@ -0,0 +1,87 @@
+package org.board.logic;
+
+import java.util.Arrays;
+
+/**
+ * A stack of the changes made to a state, used to revert actions in place instead of cloning the state. The state
+ * decides how its changes are encoded; the log only stores ints and object references and grows as needed, so
+ * recording a change doesn't allocate once the log has warmed up.
+ */
+class UndoLog {
+    /* encoded changes */
+    private int[] values = new int[1024];
+    private int valuesSize = 0;
+
+    /* objects referenced by the changes */
+    private Object[] objects = new Object[256];
+    private int objectsSize = 0;
+
+    /**
+     * Pushes a value on the log.
+     * @param value the value
+     */
+    void push(int value) {
+        if (valuesSize == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+
+        values[valuesSize++] = value;
+    }
+
+    /**
+     * Pushes a long value on the log.
+     * @param value the value
+     */
+    void pushLong(long value) {
+        push((int) value);
+        push((int) (value >>> 32));
+    }
+
+    /**
+     * Pushes an object on the log.
+     * @param object the object
+     */
+    void pushObject(Object object) {
+        if (objectsSize == objects.length) {
+            objects = Arrays.copyOf(objects, objects.length * 2);
+        }
+
+        objects[objectsSize++] = object;
+    }
+
+    /**
+     * Pops the last value pushed on the log.
+     * @return the value
+     */
+    int pop() {
+        return values[--valuesSize];
+    }
+
+    /**
+     * Pops the last long value pushed on the log.
+     * @return the value
+     */
+    long popLong() {
+        long high = pop();
+        long low = pop();
+        return (high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Pops the last object pushed on the log.
+     * @return the object
+     */
+    Object popObject() {
+        var object = objects[--objectsSize];
+        objects[objectsSize] = null;
+        return object;
+    }
+
+    /**
+     * Checks if the log has any change.
+     * @return true if the log is empty
+     */
+    boolean isEmpty() {
+        return valuesSize == 0;
+    }
+}
@@ -0,0 +1,113 @@
+package org.board.logic;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * The weights of the evaluation function of the agent (see Agent.rateState), each applied to the change of a part
+ * of the state over a searched line. Weights are saved as a properties file so tuned weights can be loaded by the
+ * agent.
+ * @param cubesFreed weight of each disease cube taken off the board.
+ * @param infectionRate weight of each step of the infection rate.
+ * @param cure weight of each cure discovered.
+ * @param epidemics weight of each epidemic drawn.
+ * @param outbreaks weight of each outbreak.
+ * @param gameOver weight of losing the game.
+ * @param researchStations weight of each research station built.
+ * @param winning weight of winning the game.
+ */
+public record Weights(double cubesFreed, double infectionRate, double cure, double epidemics, double outbreaks,
+                      double gameOver, double researchStations, double winning) {
+    /* the hand-set weights */
+    public static final Weights DEFAULT = new Weights(20, -50, 200, -80, -100, -100, 60, 1000);
+
+    /* names of the weights in files, in the order of toArray */
+    public static final String[] NAMES = {
+            "cubesFreed", "infectionRate", "cure", "epidemics", "outbreaks", "gameOver", "researchStations", "winning"
+    };
+
+    /**
+     * Creates weights from an array.
+     * @param values the weights in the order of NAMES.
+     * @return the weights
+     */
+    public static Weights of(double[] values) {
+        return new Weights(values[0], values[1], values[2], values[3], values[4], values[5], values[6], values[7]);
+    }
+
+    /**
+     * Gets the weights as an array.
+     * @return the weights in the order of NAMES.
+     */
+    public double[] toArray() {
+        return new double[]{cubesFreed, infectionRate, cure, epidemics, outbreaks, gameOver, researchStations, winning};
+    }
+
+    /**
+     * Reads weights from properties, the weights missing keep their default value.
+     * @param properties the properties holding the weights by name.
+     * @return the weights
+     * @throws Exception when a weight isn't a number.
+     */
+    public static Weights of(Properties properties) throws Exception {
+        var values = DEFAULT.toArray();
+
+        for (var i = 0; i < NAMES.length; i++) {
+            var value = properties.getProperty(NAMES[i]);
+            if (value == null) continue;
+
+            try {
+                values[i] = Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new Exception("Weight " + NAMES[i] + " isn't a number: " + value);
+            }
+        }
+
+        return of(values);
+    }
+
+    /**
+     * Writes the weights into properties.
+     * @param properties the properties to write the weights by name into.
+     */
+    public void store(Properties properties) {
+        var values = toArray();
+
+        for (var i = 0; i < NAMES.length; i++) {
+            properties.setProperty(NAMES[i], Double.toString(values[i]));
+        }
+    }
+
+    /**
+     * Loads weights from a file.
+     * @param path the properties file.
+     * @return the weights
+     * @throws Exception when the file can't be read.
+     */
+    public static Weights load(Path path) throws Exception {
+        var properties = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        return of(properties);
+    }
+
+    /**
+     * Saves the weights to a file.
+     * @param path the properties file.
+     * @throws Exception when the file can't be written.
+     */
+    public void save(Path path) throws Exception {
+        var properties = new Properties();
+        store(properties);
+
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, "Agent evaluation weights");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.board.logic;
+
+import org.board.enumerables.Colour;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of the game state. A state hash is the xor of the keys of every feature on the
+ * board, so each placement or removal only has to xor a key in or out of the hash.
+ */
+public class Zobrist {
+    /* seed for the keys - every state on the same map must share the same keys */
+    private static final long SEED = 0x5DEECE66DL;
+
+    /* maximum number of players in a game */
+    static final int MAX_PLAYERS = 4;
+
+    /* maximum number of cubes of a colour in a city (the fourth causes an outbreak instead) */
+    static final int MAX_CUBES_IN_CITY = 3;
+
+    /* upper bound for the marker keys (outbreaks, infection rate and epidemics) */
+    private static final int MAX_MARKER = 32;
+
+    /* number of cities on the map */
+    private final int cityCount;
+
+    /* key for a player pawn in a city [player * cities + city] */
+    private final long[] pawns;
+
+    /* key for n cubes of a colour in a city [(city * colours + colour) * (max + 1) + n] */
+    private final long[] cubes;
+
+    /* key for a research station in a city [city] */
+    private final long[] stations;
+
+    /* key for a city card in a player's hand [player * cities + city] */
+    private final long[] hands;
+
+    /* key for each cure indicator value [disease * 3 + value] */
+    private final long[] cures;
+
+    /* key for the position of the deck markers */
+    private final long[] playerCardIndexes;
+    private final long[] infectionCardIndexes;
+
+    /* key for the markers on the board */
+    private final long[] outbreaks;
+    private final long[] infectionRates;
+    private final long[] epidemics;
+
+    /* key for the current player */
+    private final long[] turns;
+
+    /**
+     * Generates the keys for a map.
+     * @param cityCount the number of cities on the map
+     * @param playerDeckSize the number of cards in the player deck
+     * @param infectionDeckSize the number of cards in the infection deck
+     */
+    Zobrist(int cityCount, int playerDeckSize, int infectionDeckSize) {
+        var random = new SplittableRandom(SEED);
+        var colours = Colour.values().length;
+
+        this.cityCount = cityCount;
+
+        pawns = keys(random, MAX_PLAYERS * cityCount);
+        cubes = keys(random, cityCount * colours * (MAX_CUBES_IN_CITY + 1));
+        stations = keys(random, cityCount);
+        hands = keys(random, MAX_PLAYERS * cityCount);
+        cures = keys(random, colours * 3);
+        playerCardIndexes = keys(random, playerDeckSize + 1);
+        infectionCardIndexes = keys(random, infectionDeckSize + 1);
+        outbreaks = keys(random, MAX_MARKER);
+        infectionRates = keys(random, MAX_MARKER);
+        epidemics = keys(random, MAX_MARKER);
+        turns = keys(random, MAX_PLAYERS);
+    }
+
+    /**
+     * Generates n random keys.
+     * @param random the generator
+     * @param n the number of keys
+     * @return the keys
+     */
+    private static long[] keys(SplittableRandom random, int n) {
+        var keys = new long[n];
+
+        for (int i = 0; i < n; i++) {
+            keys[i] = random.nextLong();
+        }
+
+        return keys;
+    }
+
+    long pawn(int player, int city) {
+        return pawns[player * cityCount + city];
+    }
+
+    long cubes(int city, int colour, int count) {
+        return cubes[(city * Colour.values().length + colour) * (MAX_CUBES_IN_CITY + 1) + count];
+    }
+
+    long station(int city) {
+        return stations[city];
+    }
+
+    long card(int player, int city) {
+        return hands[player * cityCount + city];
+    }
+
+    long cure(int disease, int value) {
+        return cures[disease * 3 + value];
+    }
+
+    long playerCardIndex(int index) {
+        return playerCardIndexes[index];
+    }
+
+    long infectionCardIndex(int index) {
+        return infectionCardIndexes[index];
+    }
+
+    long outbreaks(int marker) {
+        return outbreaks[Math.min(marker, MAX_MARKER - 1)];
+    }
+
+    long infectionRate(int marker) {
+        return infectionRates[Math.min(marker, MAX_MARKER - 1)];
+    }
+
+    long epidemics(int count) {
+        return epidemics[Math.min(count, MAX_MARKER - 1)];
+    }
+
+    long turn(int turn) {
+        return turns[turn];
+    }
+}
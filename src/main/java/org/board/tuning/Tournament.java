@@ -0,0 +1,391 @@
+package org.board.tuning;
+
+import org.board.logic.Agent;
+import org.board.logic.MonteCarloAgent;
+import org.board.logic.Simulation;
+import org.board.logic.Weights;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Plays agent configurations against the same seeded deals and compares them. Every configuration plays every seed,
+ * so a comparison only counts the deals where the configurations went differently (the other deals say nothing about
+ * which is better).
+ * <p>
+ * The seeds are played in rounds. After each round every configuration is compared to the first one (the baseline)
+ * with an exact sign test on the deals won by exactly one of the two. With sequential stopping the tournament ends
+ * as soon as every comparison is significant. Each round tests at the level divided by the most rounds the tournament
+ * can play, so looking after every round doesn't inflate the false positives.
+ */
+public class Tournament {
+    /* z of the two-sided 95% confidence intervals */
+    private static final double Z = 1.959964;
+
+    /* a configuration taking part, creating a new agent for every game */
+    public record Entrant(String name, Supplier<Agent> agents) {
+        /**
+         * Parses a configuration: a name followed by settings, as in "deep:depth=5,weights=tuned.properties".
+         * The settings are agent (minimax or mcts), depth, weights (a file), compact (true or false), samples,
+         * iterations (mcts only) and time (milliseconds per action).
+         * @param spec the configuration.
+         * @return the entrant
+         * @throws Exception when a setting is unknown or the weights can't be read.
+         */
+        public static Entrant parse(String spec) throws Exception {
+            var colon = spec.indexOf(':');
+            var name = colon == -1 ? spec : spec.substring(0, colon);
+
+            var monteCarlo = false;
+            var weights = Weights.DEFAULT;
+            var depth = -1;
+            var compact = false;
+            var samples = 0;
+            var iterations = -1;
+            var time = 0L;
+
+            if (colon != -1 && colon + 1 < spec.length()) {
+                for (var setting : spec.substring(colon + 1).split(",")) {
+                    var parts = setting.split("=", 2);
+                    if (parts.length != 2) throw new Exception("Setting " + setting + " of " + name + " has no value.");
+
+                    var value = parts[1].trim();
+
+                    switch (parts[0].trim()) {
+                        case "agent" -> {
+                            if (!value.equals("minimax") && !value.equals("mcts")) {
+                                throw new Exception("Unknown agent " + value + " (minimax or mcts).");
+                            }
+                            monteCarlo = value.equals("mcts");
+                        }
+                        case "depth" -> depth = Integer.parseInt(value);
+                        case "weights" -> weights = Weights.load(Path.of(value));
+                        case "compact" -> compact = Boolean.parseBoolean(value);
+                        case "samples" -> samples = Integer.parseInt(value);
+                        case "iterations" -> iterations = Integer.parseInt(value);
+                        case "time" -> time = Long.parseLong(value);
+                        default -> throw new Exception("Unknown setting " + parts[0] + " of " + name + ".");
+                    }
+                }
+            }
+
+            var isMonteCarlo = monteCarlo;
+            var agentWeights = weights;
+            var agentDepth = depth;
+            var agentCompact = compact;
+            var agentSamples = samples;
+            var agentIterations = iterations;
+            var agentTime = time;
+
+            return new Entrant(name, () -> {
+                var agent = isMonteCarlo ? new MonteCarloAgent() : new Agent();
+                agent.setWeights(agentWeights);
+                agent.setCompactSearch(agentCompact);
+                agent.setSamples(agentSamples);
+                agent.setPlayTimeBudget(agentTime);
+                agent.setTranspositionTableSize(Simulation.GAME_TABLE_SIZE);
+
+                if (agentDepth != -1) agent.setDepth(agentDepth);
+                if (agentIterations != -1 && agent instanceof MonteCarloAgent mcts) mcts.setIterations(agentIterations);
+
+                return agent;
+            });
+        }
+    }
+
+    /* games played by a configuration so far */
+    public record Standing(Entrant entrant, ArrayList<Simulation.GameResult> games) {
+        public int getWins() {
+            var wins = 0;
+
+            for (var game : games) {
+                if (game.won()) wins += 1;
+            }
+
+            return wins;
+        }
+
+        public double getWinRate() {
+            return games.isEmpty() ? 0 : (double) getWins() / games.size();
+        }
+
+        /**
+         * Gets the Wilson score interval of the win rate, which stays inside [0, 1] and holds for win rates close to
+         * 0 or 1 where the normal approximation doesn't.
+         * @return the lower and upper bounds of the 95% confidence interval.
+         */
+        public double[] getWinRateInterval() {
+            var n = games.size();
+            if (n == 0) return new double[]{0, 1};
+
+            var p = getWinRate();
+            var denominator = 1 + Z * Z / n;
+            var centre = (p + Z * Z / (2 * n)) / denominator;
+            var margin = Z * Math.sqrt(p * (1 - p) / n + Z * Z / (4.0 * n * n)) / denominator;
+
+            return new double[]{Math.max(0, centre - margin), Math.min(1, centre + margin)};
+        }
+
+        public double getAverageOutbreaks() {
+            double outbreaks = 0;
+
+            for (var game : games) {
+                outbreaks += game.outbreaks();
+            }
+
+            return games.isEmpty() ? 0 : outbreaks / games.size();
+        }
+
+        public double getAverageCures() {
+            double cures = 0;
+
+            for (var game : games) {
+                cures += game.cures();
+            }
+
+            return games.isEmpty() ? 0 : cures / games.size();
+        }
+
+        public double getAverageCpuNanos() {
+            double cpu = 0;
+
+            for (var game : games) {
+                cpu += game.cpuNanos();
+            }
+
+            return games.isEmpty() ? 0 : cpu / games.size();
+        }
+    }
+
+    /* paired comparison of a configuration with the baseline: the deals only one of the two won */
+    public record Comparison(String name, String baseline, int better, int worse, double pValue, boolean significant) {
+    }
+
+    /* outcome of the tournament */
+    public record Result(ArrayList<Standing> standings, ArrayList<Comparison> comparisons, int rounds, boolean stopped,
+                         long elapsedNanos) {
+        /**
+         * Prints the result.
+         * @param out the stream to print on.
+         */
+        public void print(PrintStream out) {
+            out.printf("%-16s %7s %7s %17s %10s %9s %12s%n", "Configuration", "Games", "Wins", "Win rate (95%)",
+                    "Outbreaks", "Cures", "CPU/game");
+
+            for (var standing : standings) {
+                var interval = standing.getWinRateInterval();
+
+                out.printf("%-16s %7d %7d %5.1f%% [%4.1f-%4.1f] %10.2f %9.2f %10.1fms%n", standing.entrant().name(),
+                        standing.games().size(), standing.getWins(), standing.getWinRate() * 100, interval[0] * 100,
+                        interval[1] * 100, standing.getAverageOutbreaks(), standing.getAverageCures(),
+                        standing.getAverageCpuNanos() / 1e6);
+            }
+
+            for (var comparison : comparisons) {
+                out.printf("%s vs %s: won %d deals the other lost, lost %d, p = %.4f%s%n", comparison.name(),
+                        comparison.baseline(), comparison.better(), comparison.worse(), comparison.pValue(),
+                        comparison.significant() ? " (significant)" : "");
+            }
+
+            out.printf("Rounds: %d%s, time %.2fs%n", rounds, stopped ? " (stopped early)" : "", elapsedNanos / 1e9);
+        }
+    }
+
+    /* the configurations, the first one is the baseline */
+    private final ArrayList<Entrant> entrants = new ArrayList<>();
+
+    /* most games played by each configuration */
+    private int games = 1000;
+
+    /* games played by each configuration in a round */
+    private int round = 100;
+
+    /* number of games played at the same time */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /* seed the seeds of the deals are drawn from */
+    private long seed = 1;
+
+    /* number of seats at each game (2 - 4) */
+    private int players = 2;
+
+    /* significance level of the comparisons, over the whole tournament */
+    private double alpha = 0.05;
+
+    /* stop once every comparison is significant */
+    private boolean sequential = true;
+
+    public void addEntrant(Entrant entrant) {
+        entrants.add(entrant);
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    public void setRound(int round) {
+        this.round = Math.max(1, round);
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setPlayers(int players) {
+        this.players = players;
+    }
+
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public void setSequential(boolean sequential) {
+        this.sequential = sequential;
+    }
+
+    /**
+     * Plays the tournament.
+     * @return the result of the tournament.
+     * @throws Exception when there are fewer than two configurations or a game state errors.
+     */
+    public Result run() throws Exception {
+        if (entrants.size() < 2) throw new Exception("A tournament needs at least two configurations.");
+
+        var standings = new ArrayList<Standing>();
+        var simulations = new ArrayList<Simulation>();
+
+        for (var entrant : entrants) {
+            standings.add(new Standing(entrant, new ArrayList<>()));
+
+            var simulation = new Simulation(entrant.agents());
+            simulation.setPlayers(players);
+            simulations.add(simulation);
+        }
+
+        var maxRounds = (games + round - 1) / round;
+        var level = alpha / maxRounds;
+        var seeds = new SplittableRandom(seed);
+        var comparisons = new ArrayList<Comparison>();
+        var rounds = 0;
+        var stopped = false;
+
+        var executor = Executors.newFixedThreadPool(threads);
+        var start = System.nanoTime();
+
+        try {
+            for (var played = 0; played < games && !stopped; played += round) {
+                var count = Math.min(round, games - played);
+                var tasks = new ArrayList<Callable<Simulation.GameResult>>();
+
+                for (var i = 0; i < count; i++) {
+                    var gameSeed = seeds.nextLong();
+
+                    for (var simulation : simulations) {
+                        tasks.add(() -> simulation.play(gameSeed));
+                    }
+                }
+
+                var futures = executor.invokeAll(tasks);
+
+                for (var i = 0; i < futures.size(); i++) {
+                    standings.get(i % simulations.size()).games().add(join(futures.get(i)));
+                }
+
+                rounds += 1;
+                comparisons = compare(standings, level);
+
+                stopped = sequential && played + count < games;
+
+                for (var comparison : comparisons) {
+                    stopped &= comparison.significant();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new Result(standings, comparisons, rounds, stopped, System.nanoTime() - start);
+    }
+
+    /**
+     * Compares every configuration with the baseline over the deals they both played.
+     * @param standings the games of each configuration, in the order of the seeds.
+     * @param level the significance level of the test.
+     * @return the comparisons
+     */
+    private static ArrayList<Comparison> compare(ArrayList<Standing> standings, double level) {
+        var comparisons = new ArrayList<Comparison>();
+        var baseline = standings.get(0);
+
+        for (var standing : standings.subList(1, standings.size())) {
+            var better = 0;
+            var worse = 0;
+
+            for (var i = 0; i < baseline.games().size(); i++) {
+                var won = standing.games().get(i).won();
+                var baselineWon = baseline.games().get(i).won();
+
+                if (won && !baselineWon) better += 1;
+                if (!won && baselineWon) worse += 1;
+            }
+
+            var pValue = signTest(better, worse);
+
+            comparisons.add(new Comparison(standing.entrant().name(), baseline.entrant().name(), better, worse, pValue,
+                    pValue < level));
+        }
+
+        return comparisons;
+    }
+
+    /**
+     * Gets the two-sided p-value of the exact sign test (McNemar's exact test): how likely a split at least this
+     * uneven is when either configuration is as likely to win a deal the other lost.
+     * @param better deals won by the configuration only.
+     * @param worse deals won by the baseline only.
+     * @return the p-value
+     */
+    public static double signTest(int better, int worse) {
+        var n = better + worse;
+        if (n == 0) return 1;
+
+        // sums the binomial probabilities of the smaller tail in logarithms, 0.5^n underflows for large n.
+        var k = Math.min(better, worse);
+        var logHalf = n * Math.log(0.5);
+        var logChoose = 0.0;
+        var tail = 0.0;
+
+        for (var i = 0; i <= k; i++) {
+            tail += Math.exp(logChoose + logHalf);
+            logChoose += Math.log(n - i) - Math.log(i + 1);
+        }
+
+        return Math.min(1, 2 * tail);
+    }
+
+    /**
+     * Waits for a game and recovers the exception it failed with.
+     * @param future the game.
+     * @return the outcome of the game.
+     * @throws Exception when the game failed.
+     */
+    private static Simulation.GameResult join(Future<Simulation.GameResult> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+}
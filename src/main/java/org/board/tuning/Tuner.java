@@ -0,0 +1,289 @@
+package org.board.tuning;
+
+import org.board.logic.Agent;
+import org.board.logic.Simulation;
+import org.board.logic.Weights;
+
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Tunes the evaluation weights of the agent by self-play with SPSA (simultaneous perturbation stochastic
+ * approximation). Each iteration perturbs every weight at once in a random direction, plays a batch of headless games
+ * with each of the two perturbed weight vectors and steps along the difference of their scores. Both batches play
+ * the same game seeds, so the difference measures the weights rather than the luck of the draws.
+ * <p>
+ * The weights are tuned relative to their starting values, so weights of different magnitudes move at the same pace.
+ * The state of the tuning is checkpointed after every iteration and a tuning restarted with the same checkpoint
+ * carries on from there. The current weights are written to the output file after every iteration as well, ready
+ * for Weights.load.
+ * <p>
+ * With the default settings an iteration plays 2000 games at the default depth of the agent, about an hour of a
+ * single core, so the hundred iterations take a night on a machine with a dozen cores.
+ */
+public class Tuner {
+    /* decay exponents of the step size and the perturbation (the values recommended for SPSA) */
+    private static final double ALPHA = 0.602;
+    private static final double GAMMA = 0.101;
+
+    /* weights the tuning starts from */
+    private Weights start = Weights.DEFAULT;
+
+    /* number of iterations */
+    private int iterations = 100;
+
+    /* number of games played by each perturbed weight vector of an iteration */
+    private int games = 1000;
+
+    /* number of games played at the same time */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /* number of seats at each game */
+    private int players = 2;
+
+    /* search depth of the agents (see Agent.setDepth) */
+    private int depth = 4;
+
+    /* seed of the perturbations and of the games */
+    private long seed = 1;
+
+    /* step size of the first iteration, relative to the starting weights */
+    private double stepSize = 0.2;
+
+    /* perturbation of the first iteration, relative to the starting weights */
+    private double perturbation = 0.1;
+
+    /* file the state of the tuning is saved to after every iteration (null to disable) */
+    private Path checkpoint = Path.of("tuning.properties");
+
+    /* file the tuned weights are saved to after every iteration */
+    private Path output = Path.of("weights.properties");
+
+    /* stream the progress is printed on */
+    private PrintStream log = System.out;
+
+    public void setStart(Weights start) {
+        this.start = start;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setPlayers(int players) {
+        this.players = players;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setStepSize(double stepSize) {
+        this.stepSize = stepSize;
+    }
+
+    public void setPerturbation(double perturbation) {
+        this.perturbation = perturbation;
+    }
+
+    public void setCheckpoint(Path checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public void setOutput(Path output) {
+        this.output = output;
+    }
+
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Runs the tuning, resuming from the checkpoint when there is one.
+     * @return the tuned weights.
+     * @throws Exception when a game fails or the files can't be read or written.
+     */
+    public Weights run() throws Exception {
+        // tuning relative to the starting weights (a weight starting at zero is tuned in absolute terms).
+        var scales = start.toArray();
+
+        for (var i = 0; i < scales.length; i++) {
+            scales[i] = scales[i] == 0 ? 1 : Math.abs(scales[i]);
+        }
+
+        var theta = new double[scales.length];
+        var weights = start;
+        var first = 0;
+
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            var properties = read(checkpoint);
+
+            if (Long.parseLong(properties.getProperty("seed")) != seed) {
+                throw new Exception("The checkpoint " + checkpoint + " was written by a tuning with another seed.");
+            }
+
+            first = Integer.parseInt(properties.getProperty("iteration"));
+            weights = Weights.of(properties);
+            log.println("Resuming from iteration " + first + " with " + weights);
+        }
+
+        var values = weights.toArray();
+
+        for (var i = 0; i < theta.length; i++) {
+            theta[i] = values[i] / scales[i];
+        }
+
+        // the step size decays from its first value over the first tenth of the iterations (A in SPSA).
+        var stability = iterations / 10.0;
+
+        for (var k = first; k < iterations; k++) {
+            var random = new SplittableRandom(seed ^ (k + 1) * 0x9E3779B97F4A7C15L);
+            var a = stepSize * Math.pow(1 + stability, ALPHA) / Math.pow(k + 1 + stability, ALPHA);
+            var c = perturbation / Math.pow(k + 1, GAMMA);
+
+            var delta = new double[theta.length];
+            var plus = new double[theta.length];
+            var minus = new double[theta.length];
+
+            for (var i = 0; i < theta.length; i++) {
+                delta[i] = random.nextBoolean() ? 1 : -1;
+                plus[i] = (theta[i] + c * delta[i]) * scales[i];
+                minus[i] = (theta[i] - c * delta[i]) * scales[i];
+            }
+
+            var gamesSeed = random.nextLong();
+            var began = System.nanoTime();
+            var scorePlus = evaluate(Weights.of(plus), gamesSeed);
+            var scoreMinus = evaluate(Weights.of(minus), gamesSeed);
+
+            for (var i = 0; i < theta.length; i++) {
+                theta[i] += a * (scorePlus - scoreMinus) / (2 * c * delta[i]);
+            }
+
+            values = new double[theta.length];
+
+            for (var i = 0; i < theta.length; i++) {
+                values[i] = theta[i] * scales[i];
+            }
+
+            weights = Weights.of(values);
+            save(k + 1, weights);
+
+            log.printf("Iteration %d/%d: scores %.4f / %.4f (%.0fs) -> %s%n", k + 1, iterations, scorePlus, scoreMinus,
+                    (System.nanoTime() - began) / 1e9, weights);
+        }
+
+        return weights;
+    }
+
+    /**
+     * Plays a batch of games with agents using the given weights.
+     * @param weights the weights of the agents.
+     * @param gamesSeed the seed of the batch.
+     * @return the average score of the games.
+     * @throws Exception when a game fails.
+     */
+    public double evaluate(Weights weights, long gamesSeed) throws Exception {
+        var simulation = new Simulation(() -> {
+            var agent = new Agent();
+            agent.setWeights(weights);
+            agent.setDepth(depth);
+            agent.setTranspositionTableSize(Simulation.GAME_TABLE_SIZE);
+            return agent;
+        });
+
+        simulation.setGames(games);
+        simulation.setThreads(threads);
+        simulation.setSeed(gamesSeed);
+        simulation.setPlayers(players);
+
+        double score = 0;
+        var report = simulation.run();
+
+        for (var game : report.games()) {
+            score += score(game);
+        }
+
+        return score / report.games().size();
+    }
+
+    /**
+     * Scores a game for the tuning: its cures, one more for a win, less an eighth for each outbreak (the eighth
+     * outbreak loses the game). Cures are the part of a win that lost games still tell apart.
+     * @param game the outcome of the game.
+     * @return the score
+     */
+    public static double score(Simulation.GameResult game) {
+        return game.cures() + (game.won() ? 1 : 0) - game.outbreaks() / 8.0;
+    }
+
+    /**
+     * Saves the checkpoint and the tuned weights.
+     * @param iteration the number of iterations completed.
+     * @param weights the tuned weights.
+     * @throws Exception when the files can't be written.
+     */
+    private void save(int iteration, Weights weights) throws Exception {
+        var properties = new Properties();
+        weights.store(properties);
+        write(properties, output, "Agent evaluation weights (iteration " + iteration + ")");
+
+        if (checkpoint == null) return;
+
+        properties.setProperty("iteration", Integer.toString(iteration));
+        properties.setProperty("seed", Long.toString(seed));
+        write(properties, checkpoint, "Tuning checkpoint");
+    }
+
+    /**
+     * Reads a properties file.
+     * @param path the file.
+     * @return the properties
+     * @throws Exception when the file can't be read.
+     */
+    private static Properties read(Path path) throws Exception {
+        var properties = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        return properties;
+    }
+
+    /**
+     * Writes a properties file, replacing the file in a single step so that an interrupted tuning never leaves a
+     * partial file behind.
+     * @param properties the properties.
+     * @param path the file.
+     * @param comment the comment written at the top of the file.
+     * @throws Exception when the file can't be written.
+     */
+    private static void write(Properties properties, Path path, String comment) throws Exception {
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, comment);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,193 @@
+package org.board.utils;
+
+import org.board.entities.City;
+import org.board.entities.CityGraph;
+import org.board.enumerables.Colour;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Compiled maps: the city graph saved in a binary file that loads without parsing. The file is memory mapped and its
+ * arrays are copied out in bulk, so loading a map costs about as much as reading the file from the page cache, which
+ * every process loading the same map shares.
+ * <p>
+ * Layout (little endian):
+ * <pre>
+ *   int    magic ("PMAP") and version
+ *   int    number of cities, length of the adjacency array, length of the string table
+ *   int[]  offset of the neighbours of each city in the adjacency array, plus the end (see CityGraph)
+ *   int[]  adjacency array
+ *   int[]  offset of the name of each city in the string table, plus the end
+ *   byte[] colour of each city (ordinal)
+ *   byte[] string table, the names of the cities in UTF-8
+ * </pre>
+ */
+public final class BinaryMap {
+    /* the first bytes of a compiled map, "PMAP" */
+    private static final int MAGIC = 0x50414D50;
+
+    /* version of the layout, bumped when it changes */
+    private static final int VERSION = 1;
+
+    /* bytes of the header */
+    private static final int HEADER = 5 * Integer.BYTES;
+
+    private BinaryMap() {
+    }
+
+    /**
+     * Compiles a text map (see Loader.loadCityGraph) into a binary map.
+     * @param text the text map file.
+     * @param binary the binary map file to write.
+     * @throws Exception when the text map can't be loaded or the binary map can't be written.
+     */
+    public static void compile(Path text, Path binary) throws Exception {
+        write(Loader.loadCityGraph(text), binary);
+    }
+
+    /**
+     * Checks if a file is a binary map.
+     * @param path the file
+     * @return true when the file starts like a binary map
+     * @throws Exception when the file can't be read.
+     */
+    public static boolean isBinary(Path path) throws Exception {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            return channel.read(buffer) == Integer.BYTES && buffer.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes a city graph as a binary map. The file is replaced in a single step, so processes loading the map never
+     * see a partial file.
+     * @param graph the city graph
+     * @param path the binary map file.
+     * @throws Exception when the file can't be written.
+     */
+    public static void write(CityGraph graph, Path path) throws Exception {
+        var cities = graph.getCities();
+        var offsets = graph.getOffsets();
+        var adjacency = graph.getAdjacency();
+
+        var names = new byte[cities.size()][];
+        var stringBytes = 0;
+
+        for (var city : cities) {
+            names[city.getId()] = city.getName().getBytes(StandardCharsets.UTF_8);
+            stringBytes += names[city.getId()].length;
+        }
+
+        var size = HEADER + (long) Integer.BYTES * (offsets.length + adjacency.length + cities.size() + 1)
+                + cities.size() + stringBytes;
+
+        if (size > Integer.MAX_VALUE) {
+            throw new Exception("The map is too large for a binary map");
+        }
+
+        var buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(cities.size()).putInt(adjacency.length).putInt(stringBytes);
+        buffer.asIntBuffer().put(offsets).put(adjacency);
+        buffer.position(buffer.position() + Integer.BYTES * (offsets.length + adjacency.length));
+
+        var nameOffset = 0;
+
+        for (var name : names) {
+            buffer.putInt(nameOffset);
+            nameOffset += name.length;
+        }
+
+        buffer.putInt(nameOffset);
+
+        for (var city : cities) {
+            buffer.put((byte) city.getColour().ordinal());
+        }
+
+        for (var name : names) {
+            buffer.put(name);
+        }
+
+        buffer.flip();
+
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a binary map.
+     * @param path the binary map file.
+     * @return the city graph
+     * @throws Exception when the file can't be read or isn't a binary map of this version.
+     */
+    public static CityGraph read(Path path) throws Exception {
+        ByteBuffer buffer;
+
+        // the mapping stays valid once the channel is closed.
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC) {
+            throw new Exception(path + " isn't a binary map");
+        }
+
+        var version = buffer.getInt();
+
+        if (version != VERSION) {
+            throw new Exception(path + " is a binary map of version " + version + ", recompile it (version " + VERSION + ")");
+        }
+
+        var cityCount = buffer.getInt();
+        var adjacencyLength = buffer.getInt();
+        var stringBytes = buffer.getInt();
+
+        var size = HEADER + (long) Integer.BYTES * (cityCount + 1 + adjacencyLength + cityCount + 1) + cityCount + stringBytes;
+
+        if (cityCount < 0 || adjacencyLength < 0 || stringBytes < 0 || buffer.capacity() != size) {
+            throw new Exception(path + " is truncated or corrupted");
+        }
+
+        var offsets = new int[cityCount + 1];
+        var adjacency = new int[adjacencyLength];
+        var nameOffsets = new int[cityCount + 1];
+
+        buffer.asIntBuffer().get(offsets).get(adjacency).get(nameOffsets);
+        buffer.position(buffer.position() + Integer.BYTES * (offsets.length + adjacency.length + nameOffsets.length));
+
+        var colours = new byte[cityCount];
+        var names = new byte[stringBytes];
+        buffer.get(colours).get(names);
+
+        var values = Colour.values();
+        var cities = new ArrayList<City>(cityCount);
+
+        for (var city = 0; city < cityCount; city++) {
+            var start = nameOffsets[city];
+            var end = nameOffsets[city + 1];
+
+            if (start < 0 || start > end || end > stringBytes || colours[city] < 0 || colours[city] >= values.length) {
+                throw new Exception(path + " is truncated or corrupted");
+            }
+
+            City.addCity(cities, city, new String(names, start, end - start, StandardCharsets.UTF_8), values[colours[city]]);
+        }
+
+        return CityGraph.of(cities, offsets, adjacency);
+    }
+}
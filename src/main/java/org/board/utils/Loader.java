@@ -5,90 +5,152 @@ import org.board.enumerables.Card;
 import org.board.enumerables.Colour;
 import org.board.enumerables.Role;
 import org.board.logic.Agent;
+import org.board.logic.GameContext;
 
-import java.io.File;
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Random;
-import java.util.Scanner;
+import java.util.random.RandomGenerator;
 
 /**
  * Handles loading game initial state.
  */
 public class Loader {
-    static Random random = new Random(20);
     static final private String FILENAME = "map.txt";
-    static private ArrayList<City> cities = new ArrayList<>();
+
+    /* the map file compiled into a binary map (see BinaryMap), loaded instead of the map file when it's up to date */
+    static final private String COMPILED_FILENAME = "map.bin";
+
+    /* the city graph, loaded once and shared by every game */
+    static private CityGraph graph = null;
+
+    /* disease cubes of a colour in the game for each city of the colour on the map */
+    static final private int CUBES_PER_CITY = 2;
 
     /**
      * Loads users from shell input
+     * @param context the context of the game
      * @return a list of players
      * @throws Exception when there is an issue in creating a player
      */
-    static public ArrayList<Player> loadPlayers() throws Exception {
-        var players = IO.getPlayerCount();
+    static public ArrayList<Player> loadPlayers(GameContext context) throws Exception {
+        if (context.getAgentSeats() > 0) {
+            return loadAgentPlayers(context);
+        }
+
+        var random = context.getRandom();
+        var players = context.getPlayers();
+        var playerCount = IO.getPlayerCount();
 
         int playerIndex;
         // create the users.
-        for (playerIndex = 0; playerIndex < players; playerIndex++) {
+        for (playerIndex = 0; playerIndex < playerCount; playerIndex++) {
             var name = IO.getPlayerName(playerIndex);
-            var roles = Player.getAvailableRoles();
+            var roles = Player.getAvailableRoles(players);
             var role = roles.get(random.nextInt(roles.size() - 1));
 
-            Player.addPlayer(name, playerIndex, Role.getRole(role));
+            Player.addPlayer(players, name, playerIndex, Role.getRole(role));
         }
 
         // creating the agent
         System.out.println();
         System.out.println("Your Agent name is 'Rupert'");
-        Player.addPlayer(Agent.NAME, playerIndex, Role.getRole(Player.getAvailableRoles().get(0)));
+        Player.addPlayer(players, Agent.NAME, playerIndex, Role.getRole(Player.getAvailableRoles(players).get(0)));
         System.out.println();
 
-        return Player.getPlayers();
+        return players;
+    }
+
+    /**
+     * Loads players for every seat of a game played by agents only, without any IO.
+     * @param context the context of the game
+     * @return a list of players
+     * @throws Exception when there is an issue in creating a player
+     */
+    static private ArrayList<Player> loadAgentPlayers(GameContext context) throws Exception {
+        var random = context.getRandom();
+        var players = context.getPlayers();
+
+        for (int playerIndex = 0; playerIndex < context.getAgentSeats(); playerIndex++) {
+            var roles = Player.getAvailableRoles(players);
+            var role = roles.get(random.nextInt(roles.size() - 1));
+
+            Player.addPlayer(players, Agent.NAME + " " + (playerIndex + 1), playerIndex, Role.getRole(role));
+        }
+
+        return players;
     }
 
 
     /**
      * Loads all the stations for the game.
+     * @param context the context of the game
      * @return a list of stations.
      */
-    static public ArrayList<Station> loadStations() {
-        var stations = Station.getStations();
+    static public ArrayList<Station> loadStations(GameContext context) {
+        var stations = context.getStations();
 
         if (stations.size() == 6) {
             return stations;
         }
 
         for (int i = 0; i < 6; i++) {
-            Station.addStation(i);
+            Station.addStation(stations, i);
         }
 
-        return Station.getStations();
+        return stations;
     }
 
     /**
-     * Loads all the disease cubes 96
+     * Loads all the disease cubes, two of a colour for each city of the colour (96 on the standard map).
+     * @param context the context of the game
      * @return a list of disease cubes
      */
-    static public ArrayList<Cube> loadCubes()  {
+    static public ArrayList<Cube> loadCubes(GameContext context)  {
+        var cubes = context.getCubes();
+
         for (var colour : Colour.values()) {
             if (colour == Colour.Invalid) continue;
 
-            var padding = (colour.ordinal() - 1) * 24;
-            for (int i = 0; i < 24; i++) {
-                var id = padding + i;
-                Cube.addCube(id, colour);
+            var count = getCubesOfColour(context.getCities(), colour);
+            for (int i = 0; i < count; i++) {
+                Cube.addCube(cubes, cubes.size(), colour);
             }
         }
 
-        return Cube.getCubes();
+        return cubes;
+    }
+
+    /**
+     * Gets the number of disease cubes of a colour in a game on a map.
+     * @param cities the cities of the map
+     * @param colour the colour of the cubes
+     * @return the number of cubes
+     */
+    static public int getCubesOfColour(ArrayList<City> cities, Colour colour) {
+        var count = 0;
+
+        for (var city : cities) {
+            if (city.getColour() == colour) count += CUBES_PER_CITY;
+        }
+
+        return count;
     }
 
     /**
      * Initialise the board state and set everything to -1 representing empty.
+     * @param cities the cities of the map
      * @return an empty boards state.
      */
-    static public int[][][] loadEmptyBoardState() {
-        int[][][] boardState = new int[48][3][24];
+    static public int[][][] loadEmptyBoardState(ArrayList<City> cities) {
+        var cubesOfColour = 0;
+
+        for (var colour : Colour.values()) {
+            if (colour != Colour.Invalid) cubesOfColour = Math.max(cubesOfColour, getCubesOfColour(cities, colour));
+        }
+
+        int[][][] boardState = new int[cities.size()][3][cubesOfColour];
 
         for (int i = 0; i < boardState.length; i++) {
             for (int j = 0; j < boardState[i].length; j++) {
@@ -103,29 +165,30 @@ public class Loader {
 
     /**
      * Loads all the player cards
+     * @param context the context of the game
      * @return a list of player cards
      */
-    static public ArrayList<PlayerCard> loadPlayerCards() {
-        for (var city : cities) {
-            PlayerCard.addCard(city.getId(), Card.Regular, city.getColour());
+    static public ArrayList<PlayerCard> loadPlayerCards(GameContext context) {
+        var playerCards = context.getPlayerCards();
+
+        for (var city : context.getCities()) {
+            PlayerCard.addCard(playerCards, city.getId(), Card.Regular, city.getColour());
         }
 
         for (int i = 0; i < 4; i++) {
-            PlayerCard.addCard(-1, Card.Epidemic, Colour.Invalid);
+            PlayerCard.addCard(playerCards, -1, Card.Epidemic, Colour.Invalid);
         }
 
-        var playerCards = PlayerCard.getCards();
-
         // shuffles the cards according to the rules.
-        shufflePlayerCards(playerCards);
+        shufflePlayerCards(playerCards, context.getRandom());
 
         return playerCards;
     }
 
-    private static void shufflePlayerCards(ArrayList<PlayerCard> playerCards) {
+    private static void shufflePlayerCards(ArrayList<PlayerCard> playerCards, RandomGenerator random) {
         var startIndex = playerCards.size() - 5;
         // shuffles first part excluding epidemic cards
-        Utils.shuffle(playerCards, startIndex);
+        Utils.shuffle(playerCards, 0, startIndex, random);
 
         // shuffles epidemic cards into early deck starting at 15
         for (int i = startIndex; i < playerCards.size(); i++) {
@@ -138,45 +201,74 @@ public class Loader {
 
     /**
      * Loads the infection deck required.
+     * @param context the context of the game
      * @return the empty infection deck
      */
-    static public ArrayList<InfectionCard> loadInfectionCards() {
-        // 48 cards representing each city
-        for (var city : cities) {
-            InfectionCard.addCard(city.getId());
+    static public ArrayList<InfectionCard> loadInfectionCards(GameContext context) {
+        var infectionCards = context.getInfectionCards();
+
+        // a card representing each city
+        for (var city : context.getCities()) {
+            InfectionCard.addCard(infectionCards, city.getId());
         }
 
-        var infectionCards = InfectionCard.getCards();
-        Utils.shuffle(infectionCards);
+        Utils.shuffle(infectionCards, 0, infectionCards.size(), context.getRandom());
 
         // loaded infection cards
         return infectionCards;
     }
 
     /**
-     * Loads a city graph
-     * @return a list of cities
+     * Loads the city graph of the map file. The graph is only read from the map file by the first call, the following
+     * calls return the same graph, which must not be modified. The compiled map file is read instead when it isn't
+     * older than the map file.
+     * @return the city graph
      * @throws Exception when it fails ot load city grpah
      */
-    static public ArrayList<City> loadCityGraph() throws Exception {
-        var handle = new File(FILENAME);
-        var reader = new Scanner(handle);
+    static synchronized public CityGraph loadCityGraph() throws Exception {
+        if (graph == null) {
+            var text = Path.of(FILENAME);
+            var compiled = Path.of(COMPILED_FILENAME);
 
-        loadCities(reader);
-        loadConnections(reader);
+            var upToDate = Files.exists(compiled) && (!Files.exists(text)
+                    || Files.getLastModifiedTime(compiled).compareTo(Files.getLastModifiedTime(text)) >= 0);
 
-        cities = City.getCities();
+            graph = loadCityGraph(upToDate ? compiled : text);
+        }
+
+        return graph;
+    }
+
+    /**
+     * Loads a city graph from a map file, either a binary map (see BinaryMap) or a text map: a line per city
+     * (name;colour), a line with --, then a line per route between two cities (name;name).
+     * @param path the map file
+     * @return the city graph
+     * @throws Exception when it fails ot load city grpah
+     */
+    static public CityGraph loadCityGraph(Path path) throws Exception {
+        if (BinaryMap.isBinary(path)) {
+            return BinaryMap.read(path);
+        }
+
+        var builder = new CityGraph.Builder();
+
+        try (var reader = Files.newBufferedReader(path)) {
+            loadCities(reader, builder);
+            loadConnections(reader, builder);
+        }
 
-        return cities;
+        return builder.build();
     }
 
     /**
-     * Loads city from file scanner.
-     * @param reader scanner with access to file.
+     * Loads city from file reader.
+     * @param reader reader with access to file.
+     * @param builder the graph the cities are added to.
+     * @throws Exception when a city is on the map twice.
      */
-    private static void loadCities(Scanner reader) {
-        for(int id = 0; reader.hasNextLine(); id++) {
-            var line = reader.nextLine();
+    private static void loadCities(BufferedReader reader, CityGraph.Builder builder) throws Exception {
+        for (var line = reader.readLine(); line != null; line = reader.readLine()) {
             if (line.equals("--")) break;
 
             var segments = line.split(";");
@@ -184,18 +276,18 @@ public class Loader {
             var name = segments[0];
             var colour = segments[1];
 
-            City.addCity(id, name, Colour.getColour(colour));
+            builder.addCity(name, Colour.getColour(colour));
         }
     }
 
     /**
      * Loads connections for the city graph
-     * @param reader scanner with access to the map file.
+     * @param reader reader with access to the map file.
+     * @param builder the graph the cities are connected in.
      * @throws Exception when it fails to connect cities together.
      */
-    private static void loadConnections(Scanner reader) throws Exception {
-        while(reader.hasNextLine()) {
-            var line = reader.nextLine();
+    private static void loadConnections(BufferedReader reader, CityGraph.Builder builder) throws Exception {
+        for (var line = reader.readLine(); line != null; line = reader.readLine()) {
             if (line.equals("--")) break;
 
             var segments = line.split(";");
@@ -203,7 +295,7 @@ public class Loader {
             var firstCity = segments[0];
             var secondCity = segments[1];
 
-            City.connect(firstCity, secondCity);
+            builder.connect(firstCity, secondCity);
         }
     }
 }
@@ -0,0 +1,231 @@
+package org.board.utils;
+
+import org.board.entities.CityGraph;
+import org.board.enumerables.Colour;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic maps for scale testing. The cities lie on a ring, each city is connected to one of the cities
+ * just before it - so the map is always connected - and gets further routes until the map reaches the average
+ * degree. A further route stays close on the ring with the clustering probability, and otherwise goes to any earlier
+ * city: uniformly, or in proportion to the routes the city already has for a power-law degree distribution (the
+ * hubs of a real map, the more so the less clustered). Colours are split in arcs of the ring or at random.
+ * <p>
+ * The first city is Atlanta, where the game starts, the others are named after their id. A map only depends on its
+ * settings and seed, and loads into the same graph whether it is generated, saved as text or compiled.
+ */
+public class MapGenerator {
+    /**
+     * How the degrees of the cities are spread.
+     */
+    public enum Distribution {
+        /* every city gets about the same number of routes */
+        Uniform,
+        /* routes are drawn to cities in proportion to their degree, a few hubs get most of them */
+        PowerLaw,
+    }
+
+    /**
+     * How the colours are spread over the cities.
+     */
+    public enum Partition {
+        /* each colour is an arc of the ring, so clustered routes mostly stay within a colour */
+        Arcs,
+        /* each city gets a colour at random */
+        Random,
+    }
+
+    /* the disease colours of the game */
+    private static final Colour[] COLOURS = {Colour.Blue, Colour.Yellow, Colour.Black, Colour.Red};
+
+    /* number of cities */
+    private int cities = 1000;
+
+    /* average number of routes per city */
+    private double degree = 4;
+
+    /* how the degrees are spread */
+    private Distribution distribution = Distribution.Uniform;
+
+    /* number of disease colours on the map (1 - 4) - games are only won with all 4, the cure of a missing colour
+       can never be discovered */
+    private int colours = 4;
+
+    /* how the colours are spread */
+    private Partition partition = Partition.Arcs;
+
+    /* probability of a further route staying close on the ring (0 - 1) */
+    private double clustering = 0.5;
+
+    /* cities before a city on the ring its close routes are drawn from */
+    private int window = 16;
+
+    /* seed of the map */
+    private long seed = 1;
+
+    public void setCities(int cities) {
+        this.cities = cities;
+    }
+
+    public void setDegree(double degree) {
+        this.degree = degree;
+    }
+
+    public void setDistribution(Distribution distribution) {
+        this.distribution = distribution;
+    }
+
+    public void setColours(int colours) {
+        this.colours = colours;
+    }
+
+    public void setPartition(Partition partition) {
+        this.partition = partition;
+    }
+
+    public void setClustering(double clustering) {
+        this.clustering = clustering;
+    }
+
+    public void setWindow(int window) {
+        this.window = Math.max(1, window);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the map.
+     * @return the city graph
+     * @throws Exception when the settings are out of range.
+     */
+    public CityGraph generate() throws Exception {
+        var map = layOut();
+        var builder = new CityGraph.Builder();
+
+        for (var city = 0; city < cities; city++) {
+            builder.addCity(getName(city), map.colours[city]);
+        }
+
+        for (var i = 0; i < map.routeCount; i++) {
+            builder.connect(map.routes[i * 2], map.routes[i * 2 + 1]);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Generates the map and saves it as a text map (see Loader.loadCityGraph), or as a binary map (see BinaryMap)
+     * when the file name ends with .bin.
+     * @param path the map file
+     * @throws Exception when the settings are out of range or the file can't be written.
+     */
+    public void save(Path path) throws Exception {
+        if (path.getFileName().toString().endsWith(".bin")) {
+            BinaryMap.write(generate(), path);
+            return;
+        }
+
+        var map = layOut();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (var city = 0; city < cities; city++) {
+                writer.write(getName(city) + ";" + map.colours[city].name());
+                writer.newLine();
+            }
+
+            writer.write("--");
+            writer.newLine();
+
+            for (var i = 0; i < map.routeCount; i++) {
+                writer.write(getName(map.routes[i * 2]) + ";" + getName(map.routes[i * 2 + 1]));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Gets the name of a city.
+     * @param city the city id
+     * @return the name
+     */
+    private static String getName(int city) {
+        return city == 0 ? "Atlanta" : "City " + city;
+    }
+
+    /* the colours and routes of a map */
+    private record Layout(Colour[] colours, int[] routes, int routeCount) {
+    }
+
+    /**
+     * Draws the colours and routes of the map, in the order they are added to the graph.
+     * @return the layout
+     * @throws Exception when the settings are out of range.
+     */
+    private Layout layOut() throws Exception {
+        CityGraph.checkCityCount(cities);
+
+        if (colours < 1 || colours > COLOURS.length) {
+            throw new Exception("A map has 1 to " + COLOURS.length + " colours");
+        }
+
+        if (degree < 2 || clustering < 0 || clustering > 1) {
+            throw new Exception("The average degree is at least 2 and the clustering between 0 and 1");
+        }
+
+        var random = new SplittableRandom(seed);
+        var cityColours = new Colour[cities];
+
+        for (var city = 0; city < cities; city++) {
+            var colour = partition == Partition.Arcs ? (int) ((long) city * colours / cities) : random.nextInt(colours);
+            cityColours[city] = COLOURS[colour];
+        }
+
+        // every city adds half of its routes, the other half comes from the cities after it.
+        var target = Math.round(degree * cities / 2);
+        var routes = new int[(int) Math.min(target, (long) cities * (cities - 1) / 2) * 2];
+        var routeCount = 0;
+        var connected = new HashSet<Long>();
+
+        // each route appears once per end, so drawing an end uniformly draws a city in proportion to its degree.
+        var ends = new int[routes.length];
+        var endCount = 0;
+
+        for (var city = 1; city < cities; city++) {
+            var remaining = (target - routeCount) / (double) (cities - city);
+            var links = (int) remaining + (random.nextDouble() < remaining - (int) remaining ? 1 : 0);
+
+            for (var link = 0; link < Math.max(1, links) && routeCount * 2 < routes.length; link++) {
+                var close = link == 0 || random.nextDouble() < clustering;
+                int other;
+
+                if (close) {
+                    other = city - 1 - random.nextInt(Math.min(city, window));
+                } else if (distribution == Distribution.PowerLaw && endCount > 0) {
+                    other = ends[random.nextInt(endCount)];
+                } else {
+                    other = random.nextInt(city);
+                }
+
+                // a draw from the ends may land on the city itself, through the routes it added already.
+                if (other == city || !connected.add((long) other << 32 | city)) continue;
+
+                routes[routeCount * 2] = other;
+                routes[routeCount * 2 + 1] = city;
+                routeCount += 1;
+
+                ends[endCount++] = other;
+                ends[endCount++] = city;
+            }
+        }
+
+        return new Layout(cityColours, Arrays.copyOf(routes, routeCount * 2), routeCount);
+    }
+}
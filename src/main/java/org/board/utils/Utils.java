@@ -1,44 +1,58 @@
 package org.board.utils;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 public class Utils {
-    // todo => remove seed when out of testing mode
-    private static final Random random = new Random(1);
-
-    public static<T> void shuffle(ArrayList<T> items) {
-        shuffle(items, items.size());
-    }
-
     /**
-     * Shuffles the dec and ends on specific number.
-     * @param items the item has been run.
-     * @param end the end of the
+     * Shuffles a range of the deck using the given generator (Fisher-Yates).
+     * @param items the items to shuffle.
+     * @param start the index to start shuffling at.
+     * @param end the index to stop shuffling at (exclusive).
+     * @param random the generator to draw swaps from.
      * @param <T> any type
      */
-    public static<T> void shuffle(ArrayList<T> items, int end) {
-        for (int currentIndex = 0; currentIndex < end; currentIndex++) {
-            int newIndex = random.nextInt(end);
+    public static<T> void shuffle(ArrayList<T> items, int start, int end, RandomGenerator random) {
+        for (int currentIndex = end - 1; currentIndex > start; currentIndex--) {
+            int newIndex = random.nextInt(start, currentIndex + 1);
             var temp = items.get(currentIndex);
             items.set(currentIndex, items.get(newIndex));
             items.set(newIndex, temp);
         }
     }
-}
 
-/*
+    /**
+     * Shuffles a range of an array using the given generator (Fisher-Yates).
+     * @param items the items to shuffle.
+     * @param start the index to start shuffling at.
+     * @param end the index to stop shuffling at (exclusive).
+     * @param random the generator to draw swaps from.
+     */
+    public static void shuffle(int[] items, int start, int end, RandomGenerator random) {
+        for (int currentIndex = end - 1; currentIndex > start; currentIndex--) {
+            int newIndex = random.nextInt(start, currentIndex + 1);
+            var temp = items[currentIndex];
+            items[currentIndex] = items[newIndex];
+            items[newIndex] = temp;
+        }
+    }
 
-0. Move by ferry to Washington
-1. Move by ferry to Chicago
-2. Move by ferry to Mexico City
-3. Move by ferry to Miami
-4. Dispose [4, Washington, Blue] to direct fly to Washington
-5. Transfer card to player [Rupert]
-6. Dispose [34, Kolkata, Black] to direct fly to Kolkata
-7. Transfer card to player [Rupert]
-8. Dispose [14, Lima, Yellow] to direct fly to Lima
-9. Transfer card to player [Rupert]
-10. Dispose [1, Chicago, Blue] to direct fly to Chicago
-11. Transfer card to player [Rupert]
- */
\ No newline at end of file
+    /**
+     * Derives independent generators from a seed, one for each thread (or game) of a run. The generators only
+     * depend on the seed and their position, so a run can be reproduced whatever the number of threads.
+     * @param seed the seed of the run.
+     * @param count the number of generators.
+     * @return the generators
+     */
+    public static SplittableRandom[] split(long seed, int count) {
+        var root = new SplittableRandom(seed);
+        var streams = new SplittableRandom[count];
+
+        for (int i = 0; i < count; i++) {
+            streams[i] = root.split();
+        }
+
+        return streams;
+    }
+}